@@ -0,0 +1,101 @@
+/*
+ * Copyright 2021 Volker Berlin (i-net software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.inetsoftware.jwebassembly.emulator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the transformation of a single class with Import annotations. The emulator is not started.
+ *
+ * @author Volker Berlin
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class TransformBenchmark {
+
+    @Param( { "de/inetsoftware/jwebassembly/web/JSObject", "de/inetsoftware/jwebassembly/api/java/lang/ReplacementForMath" } )
+    public String                 className;
+
+    private byte[]                bytes;
+
+    private final EmulatorOptions options = new EmulatorOptions();
+
+    /**
+     * Read the original class file.
+     *
+     * @throws IOException
+     *             if any I/O error occur
+     */
+    @Setup
+    public void read() throws IOException {
+        try( InputStream input = getClass().getClassLoader().getResourceAsStream( className + ".class" ) ) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            for( int count; (count = input.read( buffer )) > 0; ) {
+                output.write( buffer, 0, count );
+            }
+            bytes = output.toByteArray();
+        }
+    }
+
+    /**
+     * The transformation of the agent and the ImportPatcher.
+     *
+     * @return the patched class
+     */
+    @Benchmark
+    public byte[] patch() {
+        return ImportPatcher.patch( className, bytes, options, new HashMap<>() );
+    }
+
+    /**
+     * The same transformation with a calculation of all stack map frames for comparison.
+     *
+     * @return the patched class
+     */
+    @Benchmark
+    public byte[] patchComputeFrames() {
+        Map<String, ImportAnnotation> annotations = new HashMap<>();
+        ClassReader cr = new ClassReader( bytes );
+        cr.accept( new ImportAnnotationClassVisitor( className, annotations ), ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES );
+        ClassWriter cw = new ClassWriter( cr, ClassWriter.COMPUTE_FRAMES );
+        cr.accept( new PatchImportClassVisitor( cw, annotations, options ), 0 );
+        return cw.toByteArray();
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2021 Volker Berlin (i-net software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.inetsoftware.jwebassembly.web;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.inetsoftware.jwebassembly.api.annotation.Import;
+import de.inetsoftware.jwebassembly.emulator.JWebAssemblyEmulator;
+
+/**
+ * Benchmarks of the single crossings between Java and JavaScript.
+ *
+ * @author Volker Berlin
+ */
+public class BridgeBenchmark extends EmulatorBenchmark {
+
+    private JSObject object;
+
+    @Import( module = "Bench", js = "()=>({value:'x',echo:function(p){return p}})" )
+    private static native Object newObject();
+
+    @Import( module = "Bench", js = "(a)=>a+1" )
+    private static native int inc( int value );
+
+    @Import( module = "Bench", js = "(s)=>s.length" )
+    private static native int length( Object str );
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void init() {
+        object = new JSObject( newObject() );
+    }
+
+    /**
+     * JSObject.get with a property name.
+     */
+    @Benchmark
+    @OperationsPerInvocation( OPS )
+    public void get( Blackhole bh ) throws Exception {
+        onFxThread( () -> {
+            for( int i = 0; i < OPS; i++ ) {
+                bh.consume( object.<Object>get( "value" ) );
+            }
+        } );
+    }
+
+    /**
+     * JSObject.set with a property name and a string value.
+     */
+    @Benchmark
+    @OperationsPerInvocation( OPS )
+    public void set() throws Exception {
+        onFxThread( () -> {
+            for( int i = 0; i < OPS; i++ ) {
+                object.set( "value", "y" );
+            }
+        } );
+    }
+
+    /**
+     * JSObject.invoke of a method with a string parameter.
+     */
+    @Benchmark
+    @OperationsPerInvocation( OPS )
+    public void invoke( Blackhole bh ) throws Exception {
+        onFxThread( () -> {
+            for( int i = 0; i < OPS; i++ ) {
+                bh.consume( object.<Object>invoke( "echo", "z" ) );
+            }
+        } );
+    }
+
+    /**
+     * Pass a DOMString to an import function that accept any object. This includes the creation and the conversion of
+     * the DOMString.
+     */
+    @Benchmark
+    @OperationsPerInvocation( OPS )
+    public void domString( Blackhole bh ) throws Exception {
+        onFxThread( () -> {
+            for( int i = 0; i < OPS; i++ ) {
+                bh.consume( length( JSObject.domString( "abc" ) ) );
+            }
+        } );
+    }
+
+    /**
+     * Pass a Java string without DOMString as reference for {@link #domString(Blackhole)}.
+     */
+    @Benchmark
+    @OperationsPerInvocation( OPS )
+    public void javaString( Blackhole bh ) throws Exception {
+        onFxThread( () -> {
+            for( int i = 0; i < OPS; i++ ) {
+                bh.consume( length( "abc" ) );
+            }
+        } );
+    }
+
+    /**
+     * Call an import function with a primitive parameter via its invokedynamic call site.
+     */
+    @Benchmark
+    @OperationsPerInvocation( OPS )
+    public void importCall( Blackhole bh ) throws Exception {
+        onFxThread( () -> {
+            for( int i = 0; i < OPS; i++ ) {
+                bh.consume( inc( i ) );
+            }
+        } );
+    }
+
+    /**
+     * Call the same import function via the generic executeScript round trip of the emulator without call site.
+     */
+    @Benchmark
+    @OperationsPerInvocation( OPS )
+    public void executeScript( Blackhole bh ) throws Exception {
+        onFxThread( () -> {
+            for( int i = 0; i < OPS; i++ ) {
+                bh.consume( JWebAssemblyEmulator.JavaFxApplication.executeScript( "Bench", "inc", i ) );
+            }
+        } );
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2021 Volker Berlin (i-net software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.inetsoftware.jwebassembly.web;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.inetsoftware.jwebassembly.emulator.JWebAssemblyEmulator;
+import javafx.application.Platform;
+
+/**
+ * Base class of the benchmarks of the emulator. The JavaScript bridge can only be used from the JavaFX application
+ * thread. Every benchmark invocation switch one time to this thread and execute {@link #OPS} operations there. The
+ * benchmark methods must be annotated with {@code @OperationsPerInvocation(OPS)} so that the cost of the thread switch
+ * is distributed over the operations.
+ *
+ * @author Volker Berlin
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public abstract class EmulatorBenchmark {
+
+    /** the count of operations of a single benchmark invocation */
+    public static final int     OPS  = 1000;
+
+    private static final String PAGE = "<html><body></body></html>";
+
+    /**
+     * Load an empty page in the emulator. The emulator should be started headless with the system property
+     * {@link JWebAssemblyEmulator#HEADLESS_PROPERTY} because the toolkit is already started if the patched classes are
+     * loaded.
+     */
+    @Setup
+    public void launch() {
+        JWebAssemblyEmulator.launchContent( PAGE, this::init );
+    }
+
+    /**
+     * Create the JavaScript objects of the benchmark. This is called on the JavaFX application thread after the page
+     * was loaded.
+     */
+    protected abstract void init();
+
+    /**
+     * Run the operations of a benchmark invocation on the JavaFX application thread and wait until it is finished.
+     *
+     * @param operations
+     *            the operations
+     * @throws Exception
+     *             if the operations fail
+     */
+    protected static void onFxThread( Runnable operations ) throws Exception {
+        FutureTask<Void> task = new FutureTask<>( operations, null );
+        Platform.runLater( task );
+        try {
+            task.get();
+        } catch( ExecutionException ex ) {
+            Throwable cause = ex.getCause();
+            throw cause instanceof Exception ? (Exception)cause : ex;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2021 Volker Berlin (i-net software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.inetsoftware.jwebassembly.web.dom;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.inetsoftware.jwebassembly.web.EmulatorBenchmark;
+
+/**
+ * Benchmarks of the DOM wrappers.
+ *
+ * @author Volker Berlin
+ */
+public class DomBenchmark extends EmulatorBenchmark {
+
+    /** the count of children in the node list, the half are elements and the other half text nodes */
+    private static final int CHILD_COUNT = 100;
+
+    private Document         document;
+
+    private Node             body;
+
+    private NodeList         children;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void init() {
+        document = Window.document();
+        body = document.body();
+        for( int i = 0; i < CHILD_COUNT / 2; i++ ) {
+            body.appendChild( document.createElement( "div" ) );
+            body.appendChild( document.createTextNode( "text" ) );
+        }
+        children = body.childNodes();
+    }
+
+    /**
+     * Document.createElement with the Java wrapper.
+     */
+    @Benchmark
+    @OperationsPerInvocation( OPS )
+    public void createElement( Blackhole bh ) throws Exception {
+        onFxThread( () -> {
+            for( int i = 0; i < OPS; i++ ) {
+                bh.consume( document.createElement( "div" ) );
+            }
+        } );
+    }
+
+    /**
+     * Read properties by name with JSObject.get. The names are converted to a DOMString on every call.
+     */
+    @Benchmark
+    @OperationsPerInvocation( OPS )
+    public void propertyAccess( Blackhole bh ) throws Exception {
+        onFxThread( () -> {
+            for( int i = 0; i < OPS; i++ ) {
+                bh.consume( body.nodeType() );
+                bh.consume( children.length() );
+            }
+        } );
+    }
+
+    /**
+     * NodeList.item with the typed Java wrapper for elements and text nodes.
+     */
+    @Benchmark
+    @OperationsPerInvocation( OPS )
+    public void nodeListItem( Blackhole bh ) throws Exception {
+        onFxThread( () -> {
+            for( int i = 0; i < OPS; i++ ) {
+                bh.consume( children.item( i % CHILD_COUNT ) );
+            }
+        } );
+    }
+
+    /**
+     * Iterate all items of a NodeList with a single bulk request per iteration.
+     */
+    @Benchmark
+    @OperationsPerInvocation( OPS )
+    public void nodeListIterate( Blackhole bh ) throws Exception {
+        onFxThread( () -> {
+            for( int i = 0; i < OPS / CHILD_COUNT; i++ ) {
+                for( Node node : children ) {
+                    bh.consume( node );
+                }
+            }
+        } );
+    }
+
+    /**
+     * Iterate all items of a new NodeList without cached wrappers.
+     */
+    @Benchmark
+    @OperationsPerInvocation( OPS )
+    public void nodeListIterateNew( Blackhole bh ) throws Exception {
+        onFxThread( () -> {
+            for( int i = 0; i < OPS / CHILD_COUNT; i++ ) {
+                for( Node node : body.childNodes() ) {
+                    bh.consume( node );
+                }
+            }
+        } );
+    }
+
+    /**
+     * Iterate all items of a new NodeList with item().
+     */
+    @Benchmark
+    @OperationsPerInvocation( OPS )
+    public void nodeListItemNew( Blackhole bh ) throws Exception {
+        onFxThread( () -> {
+            for( int i = 0; i < OPS / CHILD_COUNT; i++ ) {
+                NodeList list = body.childNodes();
+                for( int k = 0; k < CHILD_COUNT; k++ ) {
+                    bh.consume( list.item( k ) );
+                }
+            }
+        } );
+    }
+
+    /**
+     * Build a list with createElement, createTextNode and appendChild for every node. An operation is a list item
+     * with its text.
+     */
+    @Benchmark
+    @OperationsPerInvocation( OPS )
+    public void buildWithAppendChild( Blackhole bh ) throws Exception {
+        onFxThread( () -> {
+            HTMLElement list = document.createElement( "ul" );
+            for( int i = 0; i < OPS; i++ ) {
+                HTMLElement item = document.createElement( "li" );
+                item.appendChild( document.createTextNode( "item" ) );
+                list.appendChild( item );
+            }
+            bh.consume( list );
+        } );
+    }
+
+    /**
+     * Build a list with the FragmentBuilder in a single call. An operation is a list item with its text.
+     */
+    @Benchmark
+    @OperationsPerInvocation( OPS )
+    public void buildWithFragmentBuilder( Blackhole bh ) throws Exception {
+        onFxThread( () -> {
+            HTMLElement list = document.createElement( "ul" );
+            FragmentBuilder builder = document.fragmentBuilder();
+            for( int i = 0; i < OPS; i++ ) {
+                builder.element( "li" ).text( "item" ).end();
+            }
+            builder.appendTo( list );
+            bh.consume( list );
+        } );
+    }
+}
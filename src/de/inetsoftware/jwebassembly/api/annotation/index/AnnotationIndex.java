@@ -0,0 +1,365 @@
+/*
+ * Copyright 2021 Volker Berlin (i-net software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.inetsoftware.jwebassembly.api.annotation.index;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * The index of the JWebAssembly annotations of a jar file or classes directory. The annotations have the retention
+ * CLASS and can not be read with reflection. The {@link AnnotationIndexProcessor} writes the index at compile time to
+ * the resource {@link #RESOURCE}, so that tools can read all annotations of a jar file with a single read instead of
+ * parsing every class file.
+ * <p>
+ * The file format is: magic, version, a table of strings and the entries. Every entry references the strings by its
+ * index in the table.
+ *
+ * @author Volker Berlin
+ */
+public class AnnotationIndex {
+
+    /** the name of the resource with the index */
+    public static final String   RESOURCE = "META-INF/jwebassembly/annotations.idx";
+
+    private static final int     MAGIC    = 0x4A574149; // JWAI
+
+    private static final int     VERSION  = 1;
+
+    private final List<Entry>    entries  = new ArrayList<>();
+
+    /**
+     * Create an empty index.
+     */
+    public AnnotationIndex() {
+    }
+
+    /**
+     * Read all indexes that a class loader can find. Every jar file and every classes directory can have its own
+     * index.
+     *
+     * @param loader
+     *            the class loader
+     * @return the merged index
+     * @throws IOException
+     *             if any I/O error occur
+     */
+    @Nonnull
+    public static AnnotationIndex load( ClassLoader loader ) throws IOException {
+        AnnotationIndex index = new AnnotationIndex();
+        Enumeration<URL> resources = loader.getResources( RESOURCE );
+        while( resources.hasMoreElements() ) {
+            try( InputStream input = resources.nextElement().openStream() ) {
+                index.entries.addAll( read( input ).entries );
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Read an index.
+     *
+     * @param input
+     *            the stream of the resource
+     * @return the index
+     * @throws IOException
+     *             if any I/O error occur or the format is invalid
+     */
+    @Nonnull
+    public static AnnotationIndex read( InputStream input ) throws IOException {
+        DataInputStream data = new DataInputStream( new BufferedInputStream( input ) );
+        if( data.readInt() != MAGIC ) {
+            throw new IOException( "Invalid annotation index" );
+        }
+        int version = data.readUnsignedShort();
+        if( version != VERSION ) {
+            throw new IOException( "Unsupported version of annotation index: " + version );
+        }
+        String[] strings = new String[data.readInt()];
+        for( int i = 0; i < strings.length; i++ ) {
+            byte[] bytes = new byte[data.readInt()];
+            data.readFully( bytes );
+            strings[i] = new String( bytes, StandardCharsets.UTF_8 );
+        }
+        AnnotationIndex index = new AnnotationIndex();
+        for( int i = data.readInt(); i > 0; i-- ) {
+            String annotation = strings[data.readInt()];
+            String className = strings[data.readInt()];
+            String name = strings[data.readInt()];
+            String descriptor = strings[data.readInt()];
+            int access = data.readInt();
+            Map<String, String> values = new LinkedHashMap<>();
+            for( int v = data.readUnsignedShort(); v > 0; v-- ) {
+                values.put( strings[data.readInt()], strings[data.readInt()] );
+            }
+            index.entries.add( new Entry( annotation, className, name, descriptor, access, values ) );
+        }
+        return index;
+    }
+
+    /**
+     * Write the index.
+     *
+     * @param output
+     *            the target
+     * @throws IOException
+     *             if any I/O error occur
+     */
+    public void write( OutputStream output ) throws IOException {
+        Map<String, Integer> table = new LinkedHashMap<>();
+        for( Entry entry : entries ) {
+            intern( table, entry.annotation );
+            intern( table, entry.className );
+            intern( table, entry.name );
+            intern( table, entry.descriptor );
+            for( Map.Entry<String, String> value : entry.values.entrySet() ) {
+                intern( table, value.getKey() );
+                intern( table, value.getValue() );
+            }
+        }
+
+        DataOutputStream data = new DataOutputStream( output );
+        data.writeInt( MAGIC );
+        data.writeShort( VERSION );
+        data.writeInt( table.size() );
+        for( String str : table.keySet() ) {
+            // the JavaScript of an import can be longer as the limit of writeUTF
+            byte[] bytes = str.getBytes( StandardCharsets.UTF_8 );
+            data.writeInt( bytes.length );
+            data.write( bytes );
+        }
+        data.writeInt( entries.size() );
+        for( Entry entry : entries ) {
+            data.writeInt( table.get( entry.annotation ) );
+            data.writeInt( table.get( entry.className ) );
+            data.writeInt( table.get( entry.name ) );
+            data.writeInt( table.get( entry.descriptor ) );
+            data.writeInt( entry.access );
+            data.writeShort( entry.values.size() );
+            for( Map.Entry<String, String> value : entry.values.entrySet() ) {
+                data.writeInt( table.get( value.getKey() ) );
+                data.writeInt( table.get( value.getValue() ) );
+            }
+        }
+        data.flush();
+    }
+
+    /**
+     * Add a string to the string table.
+     *
+     * @param table
+     *            the string table
+     * @param str
+     *            the string
+     */
+    private static void intern( Map<String, Integer> table, String str ) {
+        table.putIfAbsent( str, table.size() );
+    }
+
+    /**
+     * Add an entry.
+     *
+     * @param entry
+     *            the entry
+     */
+    public void add( @Nonnull Entry entry ) {
+        entries.add( entry );
+    }
+
+    /**
+     * If the index has no entries.
+     *
+     * @return true, if empty
+     */
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * All entries in the order of the index.
+     *
+     * @return the entries
+     */
+    @Nonnull
+    public List<Entry> entries() {
+        return Collections.unmodifiableList( entries );
+    }
+
+    /**
+     * All entries of an annotation type.
+     *
+     * @param annotation
+     *            the annotation type like Import.class
+     * @return the entries
+     */
+    @Nonnull
+    public List<Entry> entries( Class<? extends Annotation> annotation ) {
+        String name = annotation.getName();
+        List<Entry> list = new ArrayList<>();
+        for( Entry entry : entries ) {
+            if( entry.annotation.equals( name ) ) {
+                list.add( entry );
+            }
+        }
+        return list;
+    }
+
+    /**
+     * The entries of an annotation type by the value of an annotation attribute, for example all Replace annotations by
+     * the replaced signature.
+     *
+     * @param annotation
+     *            the annotation type like Replace.class
+     * @param key
+     *            the name of the attribute like "value"
+     * @return the entries by the attribute value
+     */
+    @Nonnull
+    public Map<String, Entry> map( Class<? extends Annotation> annotation, String key ) {
+        Map<String, Entry> map = new HashMap<>();
+        for( Entry entry : entries( annotation ) ) {
+            String value = entry.getValue( key );
+            if( value != null ) {
+                map.put( value, entry );
+            }
+        }
+        return map;
+    }
+
+    /**
+     * A single annotation of a class or method.
+     */
+    public static class Entry {
+
+        private final String              annotation;
+
+        private final String              className;
+
+        private final String              name;
+
+        private final String              descriptor;
+
+        private final int                 access;
+
+        private final Map<String, String> values;
+
+        /**
+         * Create an entry.
+         *
+         * @param annotation
+         *            the class name of the annotation type like "de.inetsoftware.jwebassembly.api.annotation.Import"
+         * @param className
+         *            the internal name of the annotated class like "java/lang/String"
+         * @param name
+         *            the name of the annotated method or an empty string for an annotated class
+         * @param descriptor
+         *            the descriptor of the annotated method or an empty string for an annotated class
+         * @param access
+         *            the access flags of the annotated class or method like in a class file
+         * @param values
+         *            the values of the annotation attributes
+         */
+        public Entry( String annotation, String className, String name, String descriptor, int access, Map<String, String> values ) {
+            this.annotation = annotation;
+            this.className = className;
+            this.name = name;
+            this.descriptor = descriptor;
+            this.access = access;
+            this.values = values;
+        }
+
+        /**
+         * The class name of the annotation type.
+         *
+         * @return the name like "de.inetsoftware.jwebassembly.api.annotation.Import"
+         */
+        public String getAnnotation() {
+            return annotation;
+        }
+
+        /**
+         * The internal name of the annotated class.
+         *
+         * @return the name like "java/lang/String"
+         */
+        public String getClassName() {
+            return className;
+        }
+
+        /**
+         * The name of the annotated method.
+         *
+         * @return the name or an empty string for an annotated class
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * The descriptor of the annotated method.
+         *
+         * @return the descriptor like "(I)V" or an empty string for an annotated class
+         */
+        public String getDescriptor() {
+            return descriptor;
+        }
+
+        /**
+         * The access flags of the annotated class or method like in a class file.
+         *
+         * @return the flags
+         */
+        public int getAccess() {
+            return access;
+        }
+
+        /**
+         * The value of an annotation attribute. For Import annotations the default of module and name are resolved.
+         *
+         * @param key
+         *            the name of the attribute
+         * @return the value or null if not set
+         */
+        @Nullable
+        public String getValue( String key ) {
+            return values.get( key );
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return '@' + annotation + values + ' ' + className + (name.isEmpty() ? "" : '.' + name + descriptor);
+        }
+    }
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright 2021 Volker Berlin (i-net software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.inetsoftware.jwebassembly.api.annotation.index;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Annotation processor that writes the {@link AnnotationIndex} of the compiled classes. The processor is registered as
+ * service of the API jar and runs automatically if a project is compiled with the API on the classpath. An index is only
+ * written if there are any JWebAssembly annotations.
+ *
+ * @author Volker Berlin
+ */
+@SupportedAnnotationTypes( { AnnotationIndexProcessor.PACKAGE + "Import", AnnotationIndexProcessor.PACKAGE + "Export", AnnotationIndexProcessor.PACKAGE + "Replace", AnnotationIndexProcessor.PACKAGE + "Partial", AnnotationIndexProcessor.PACKAGE + "WasmTextCode" } )
+public class AnnotationIndexProcessor extends AbstractProcessor {
+
+    static final String           PACKAGE  = "de.inetsoftware.jwebassembly.api.annotation.";
+
+    private final AnnotationIndex index    = new AnnotationIndex();
+
+    private final List<Element>   elements = new ArrayList<>();
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean process( Set<? extends TypeElement> annotations, RoundEnvironment roundEnv ) {
+        for( TypeElement annotation : annotations ) {
+            for( Element element : roundEnv.getElementsAnnotatedWith( annotation ) ) {
+                for( AnnotationMirror mirror : element.getAnnotationMirrors() ) {
+                    if( mirror.getAnnotationType().asElement().equals( annotation ) ) {
+                        add( annotation, element, mirror );
+                    }
+                }
+            }
+        }
+        if( roundEnv.processingOver() && !index.isEmpty() ) {
+            write();
+        }
+        // other processors can also process the annotations
+        return false;
+    }
+
+    /**
+     * Add an annotation to the index.
+     *
+     * @param annotation
+     *            the annotation type
+     * @param element
+     *            the annotated class or method
+     * @param mirror
+     *            the annotation
+     */
+    private void add( TypeElement annotation, Element element, AnnotationMirror mirror ) {
+        TypeElement type;
+        String name;
+        String descriptor;
+        if( element instanceof ExecutableElement ) {
+            type = (TypeElement)element.getEnclosingElement();
+            name = element.getKind() == ElementKind.CONSTRUCTOR ? "<init>" : element.getSimpleName().toString();
+            descriptor = descriptor( (ExecutableElement)element, type );
+        } else if( element instanceof TypeElement ) {
+            type = (TypeElement)element;
+            name = "";
+            descriptor = "";
+        } else {
+            return;
+        }
+        String className = internalName( type );
+
+        Map<String, String> values = new LinkedHashMap<>();
+        if( annotation.getSimpleName().contentEquals( "Import" ) ) {
+            // the same defaults like the compiler and the emulator
+            values.put( "module", className.substring( className.lastIndexOf( '/' ) + 1 ) );
+            values.put( "name", name );
+        } else if( annotation.getSimpleName().contentEquals( "Export" ) ) {
+            values.put( "name", name );
+        }
+        for( Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> value : mirror.getElementValues().entrySet() ) {
+            values.put( value.getKey().getSimpleName().toString(), String.valueOf( value.getValue().getValue() ) );
+        }
+
+        index.add( new AnnotationIndex.Entry( annotation.getQualifiedName().toString(), className, name, descriptor, access( element ), values ) );
+        elements.add( element );
+    }
+
+    /**
+     * Write the index to the class output.
+     */
+    private void write() {
+        try {
+            FileObject file = processingEnv.getFiler().createResource( StandardLocation.CLASS_OUTPUT, "", AnnotationIndex.RESOURCE, elements.toArray( new Element[elements.size()] ) );
+            try( OutputStream output = file.openOutputStream() ) {
+                index.write( output );
+            }
+        } catch( IOException ex ) {
+            processingEnv.getMessager().printMessage( Diagnostic.Kind.ERROR, "Can not write the JWebAssembly annotation index: " + ex );
+        }
+    }
+
+    /**
+     * The internal name of a class like "java/lang/String".
+     *
+     * @param type
+     *            the class
+     * @return the name
+     */
+    private String internalName( TypeElement type ) {
+        return processingEnv.getElementUtils().getBinaryName( type ).toString().replace( '.', '/' );
+    }
+
+    /**
+     * The descriptor of a method like in a class file.
+     *
+     * @param method
+     *            the method
+     * @param type
+     *            the class of the method
+     * @return the descriptor
+     */
+    private String descriptor( ExecutableElement method, TypeElement type ) {
+        StringBuilder builder = new StringBuilder( "(" );
+        if( method.getKind() == ElementKind.CONSTRUCTOR && type.getNestingKind() == NestingKind.MEMBER && !type.getModifiers().contains( Modifier.STATIC ) ) {
+            // the constructor of an inner class has the outer instance as first parameter
+            appendType( builder, type.getEnclosingElement().asType() );
+        }
+        for( VariableElement param : method.getParameters() ) {
+            appendType( builder, param.asType() );
+        }
+        builder.append( ')' );
+        appendType( builder, method.getReturnType() );
+        return builder.toString();
+    }
+
+    /**
+     * Append the descriptor of a type.
+     *
+     * @param builder
+     *            the target
+     * @param type
+     *            the type
+     */
+    private void appendType( StringBuilder builder, TypeMirror type ) {
+        type = processingEnv.getTypeUtils().erasure( type );
+        switch( type.getKind() ) {
+            case BOOLEAN:
+                builder.append( 'Z' );
+                break;
+            case BYTE:
+                builder.append( 'B' );
+                break;
+            case CHAR:
+                builder.append( 'C' );
+                break;
+            case SHORT:
+                builder.append( 'S' );
+                break;
+            case INT:
+                builder.append( 'I' );
+                break;
+            case LONG:
+                builder.append( 'J' );
+                break;
+            case FLOAT:
+                builder.append( 'F' );
+                break;
+            case DOUBLE:
+                builder.append( 'D' );
+                break;
+            case VOID:
+                builder.append( 'V' );
+                break;
+            case ARRAY:
+                builder.append( '[' );
+                appendType( builder, ((ArrayType)type).getComponentType() );
+                break;
+            case DECLARED:
+                builder.append( 'L' ).append( internalName( (TypeElement)((DeclaredType)type).asElement() ) ).append( ';' );
+                break;
+            default:
+                // type variables are erased, other types can not occur in a method signature
+                builder.append( "Ljava/lang/Object;" );
+        }
+    }
+
+    /**
+     * The access flags of an element like in a class file.
+     *
+     * @param element
+     *            the class or method
+     * @return the flags
+     */
+    private static int access( Element element ) {
+        int access = 0;
+        for( Modifier modifier : element.getModifiers() ) {
+            switch( modifier ) {
+                case PUBLIC:
+                    access |= 0x0001;
+                    break;
+                case PRIVATE:
+                    access |= 0x0002;
+                    break;
+                case PROTECTED:
+                    access |= 0x0004;
+                    break;
+                case STATIC:
+                    access |= 0x0008;
+                    break;
+                case FINAL:
+                    access |= 0x0010;
+                    break;
+                case NATIVE:
+                    access |= 0x0100;
+                    break;
+                case ABSTRACT:
+                    access |= 0x0400;
+                    break;
+                default:
+            }
+        }
+        return access;
+    }
+}
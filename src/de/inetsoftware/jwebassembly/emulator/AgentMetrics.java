@@ -0,0 +1,124 @@
+/*
+ * Copyright 2021 Volker Berlin (i-net software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.inetsoftware.jwebassembly.emulator;
+
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * The class transformation statistics of the emulator's javaagent. The counters are always recorded. They are
+ * published as JMX MBean "de.inetsoftware.jwebassembly:type=Agent" and printed in the report if the agent was started
+ * with the option "metrics".
+ *
+ * @author Volker Berlin
+ */
+class AgentMetrics implements AgentMetricsMBean {
+
+    static final AgentMetrics INSTANCE = new AgentMetrics();
+
+    final LongAdder           scanned  = new LongAdder();
+
+    final LongAdder           skipped  = new LongAdder();
+
+    final LongAdder           patched  = new LongAdder();
+
+    final LongAdder           cached   = new LongAdder();
+
+    final LongAdder           replaced = new LongAdder();
+
+    final LongAdder           nanos    = new LongAdder();
+
+    /** the summary of the replacement index or null if the option "replace" is not set */
+    volatile String           replacements;
+
+    /**
+     * Register the instance as MBean.
+     */
+    static void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean( INSTANCE, new ObjectName( "de.inetsoftware.jwebassembly:type=Agent" ) );
+        } catch( JMException ex ) {
+            ex.printStackTrace();
+        }
+    }
+
+    /**
+     * Write the statistics.
+     *
+     * @param writer
+     *            the target
+     */
+    void report( PrintWriter writer ) {
+        writer.println( String.format( "JWebAssembly emulator agent: %d classes scanned, %d skipped, %d patched (%d from cache), %d with replacements in %.1f ms", //
+                        getScannedClasses(), getSkippedClasses(), getPatchedClasses(), getCachedClasses(), getReplacedClasses(), getTransformTime() ) );
+        String summary = replacements;
+        if( summary != null ) {
+            writer.println( "JWebAssembly replacements: " + summary );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getScannedClasses() {
+        return scanned.sum();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getSkippedClasses() {
+        return skipped.sum();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getPatchedClasses() {
+        return patched.sum();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getCachedClasses() {
+        return cached.sum();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getReplacedClasses() {
+        return replaced.sum();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getTransformTime() {
+        return nanos.sum() / 1000000.0;
+    }
+}
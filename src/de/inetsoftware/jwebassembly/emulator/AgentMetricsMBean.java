@@ -0,0 +1,66 @@
+/*
+ * Copyright 2021 Volker Berlin (i-net software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.inetsoftware.jwebassembly.emulator;
+
+/**
+ * The JMX interface of the class transformation statistics of the emulator's javaagent.
+ *
+ * @author Volker Berlin
+ */
+public interface AgentMetricsMBean {
+
+    /**
+     * The count of classes that the agent has seen.
+     *
+     * @return the count
+     */
+    long getScannedClasses();
+
+    /**
+     * The count of classes that was rejected by the package filter or by the constant pool scan without parsing.
+     *
+     * @return the count
+     */
+    long getSkippedClasses();
+
+    /**
+     * The count of classes with Import annotations that was patched.
+     *
+     * @return the count
+     */
+    long getPatchedClasses();
+
+    /**
+     * The count of patched classes that was read from the transformation cache.
+     *
+     * @return the count
+     */
+    long getCachedClasses();
+
+    /**
+     * The count of classes that was changed by the Replace and Partial replacements.
+     *
+     * @return the count
+     */
+    long getReplacedClasses();
+
+    /**
+     * The cumulative time of the class transformation.
+     *
+     * @return the time in milliseconds
+     */
+    double getTransformTime();
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2021 Volker Berlin (i-net software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.inetsoftware.jwebassembly.emulator;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+/**
+ * The options of the emulator's javaagent. The options are passed as comma separated list via
+ * -javaagent:jwebassembly-api.jar=option1,option2=value
+ * <ul>
+ * <li><b>metrics</b> - record call count, latency and argument conversions of every import function, publish it as
+ * JMX MBeans and print a report on exit. With <b>metrics=file</b> the report is written to the file.</li>
+ * <li><b>probes</b> - measure the end-to-end time of every patched import method including the argument conversions
+ * and publish it per call site as JMX MBeans with the name "de.inetsoftware.jwebassembly:type=Probe,...". With
+ * <b>probes=n</b> only one of n calls is measured to bound the overhead under load.</li>
+ * <li><b>cache</b> - save the patched classes and the classes without Import annotations in a directory and reuse it in
+ * the next runs. With <b>cache=directory</b> another directory than the temp directory can be set.</li>
+ * <li><b>include=package</b> - patch only classes in the package and its sub packages. Can be repeated.</li>
+ * <li><b>exclude=package</b> - never patch classes in the package and its sub packages. Can be repeated.</li>
+ * <li><b>replace=package</b> - run the Replace and Partial replacements of the API in the classes of the package and its
+ * sub packages like in WebAssembly. Can be repeated. Only for the javaagent.</li>
+ * </ul>
+ *
+ * @author Volker Berlin
+ */
+class EmulatorOptions {
+
+    /** record metrics for every import function */
+    boolean            metrics;
+
+    /** the file for the metrics report, null for System.out */
+    String             metricsReport;
+
+    /** measure one of n calls of every patched import method, 0 if disabled */
+    int                probes;
+
+    /** the directory of the transformation cache, null if disabled */
+    String             cacheDir;
+
+    /** the package prefixes in internal form of the classes that should be scanned, empty for all */
+    final List<String> includes = new ArrayList<>();
+
+    /** the package prefixes in internal form of the classes that are never scanned */
+    final List<String> excludes = new ArrayList<>();
+
+    /** the package prefixes in internal form of the classes that use the replacements, empty if disabled */
+    final List<String> replaces = new ArrayList<>();
+
+    /**
+     * Parse the arguments of the javaagent.
+     *
+     * @param agentArgs
+     *            the arguments or null
+     * @return the options
+     */
+    static EmulatorOptions parse( @Nullable String agentArgs ) {
+        EmulatorOptions options = new EmulatorOptions();
+        if( agentArgs == null ) {
+            return options;
+        }
+        for( String arg : agentArgs.split( "," ) ) {
+            arg = arg.trim();
+            if( arg.isEmpty() ) {
+                continue;
+            }
+            int idx = arg.indexOf( '=' );
+            String key = idx < 0 ? arg : arg.substring( 0, idx ).trim();
+            String value = idx < 0 ? null : arg.substring( idx + 1 ).trim();
+            switch( key ) {
+                case "metrics":
+                    options.metrics = true;
+                    options.metricsReport = value;
+                    break;
+                case "probes":
+                    options.probes = value == null ? 1 : sampleRate( arg, value );
+                    break;
+                case "cache":
+                    options.cacheDir = value != null ? value : new File( System.getProperty( "java.io.tmpdir" ), "jwebassembly-emulator" ).getPath();
+                    break;
+                case "include":
+                    options.includes.add( packagePrefix( arg, value ) );
+                    break;
+                case "exclude":
+                    options.excludes.add( packagePrefix( arg, value ) );
+                    break;
+                case "replace":
+                    options.replaces.add( packagePrefix( arg, value ) );
+                    break;
+                default:
+                    throw new IllegalArgumentException( "Unknown option of the JWebAssembly emulator: " + arg );
+            }
+        }
+        return options;
+    }
+
+    /**
+     * Convert a package name to a prefix of internal class names.
+     *
+     * @param arg
+     *            the option for the error message
+     * @param value
+     *            the package name like "com.example"
+     * @return the prefix like "com/example/"
+     */
+    private static String packagePrefix( String arg, @Nullable String value ) {
+        if( value == null || value.isEmpty() ) {
+            throw new IllegalArgumentException( "Missing package name for option of the JWebAssembly emulator: " + arg );
+        }
+        String prefix = value.replace( '.', '/' );
+        return prefix.endsWith( "/" ) ? prefix : prefix + '/';
+    }
+
+    /**
+     * Parse the sample rate of the probes.
+     *
+     * @param arg
+     *            the option for the error message
+     * @param value
+     *            the value of the option
+     * @return the rate, 1 for every call
+     */
+    private static int sampleRate( String arg, String value ) {
+        try {
+            int rate = Integer.parseInt( value );
+            if( rate > 0 ) {
+                return rate;
+            }
+        } catch( NumberFormatException ex ) {
+            // throw the exception below
+        }
+        throw new IllegalArgumentException( "Invalid sample rate for option of the JWebAssembly emulator: " + arg );
+    }
+
+    /**
+     * If a class should be scanned for Import annotations according the package filters.
+     *
+     * @param className
+     *            the internal name of the class
+     * @return true, if the class should be scanned
+     */
+    boolean accept( String className ) {
+        if( startsWith( className, excludes ) ) {
+            return false;
+        }
+        return includes.isEmpty() || startsWith( className, includes );
+    }
+
+    /**
+     * If the calls of a class should be redirected to the replacements according the package filters.
+     *
+     * @param className
+     *            the internal name of the class
+     * @return true, if the class use the replacements
+     */
+    boolean acceptReplace( String className ) {
+        return startsWith( className, replaces ) && !startsWith( className, excludes );
+    }
+
+    /**
+     * If the class name starts with any of the prefixes.
+     *
+     * @param className
+     *            the internal name of the class
+     * @param prefixes
+     *            the package prefixes
+     * @return true, if any prefix match
+     */
+    private static boolean startsWith( String className, List<String> prefixes ) {
+        for( String prefix : prefixes ) {
+            if( className.startsWith( prefix ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2021 Volker Berlin (i-net software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.inetsoftware.jwebassembly.emulator;
+
+import java.util.Collection;
+import java.util.Objects;
+
+import javax.annotation.Nonnull;
+
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.concurrent.Worker;
+import javafx.scene.Scene;
+import javafx.scene.layout.VBox;
+import javafx.scene.web.WebEngine;
+import javafx.scene.web.WebView;
+import netscape.javascript.JSException;
+import netscape.javascript.JSObject;
+
+/**
+ * A page of the emulator with its own WebEngine. Every page has its own wasmImports with the import functions and its
+ * own helper for batched calls, so that multiple pages can be loaded independently. All methods must be called on the
+ * JavaFX application thread.
+ *
+ * @author Volker Berlin
+ */
+@SuppressWarnings( "restriction" )
+class EmulatorPage {
+
+    private final WebEngine webEngine;
+
+    private final Scene     scene;
+
+    private String          loadedUrl;
+
+    private String          loadedContent;
+
+    private boolean         loaded;
+
+    private String          snapshot;
+
+    private JSObject        wasmImports;
+
+    private JSObject        batchHelper;
+
+    /** true, if a main method is running or waiting for this page */
+    boolean                 busy;
+
+    /**
+     * Create a new page without content.
+     *
+     * @param headless
+     *            true, if the page is never displayed
+     */
+    EmulatorPage( boolean headless ) {
+        if( headless ) {
+            // a WebEngine without WebView does not need any Scene, layout or rendering
+            webEngine = new WebEngine();
+            scene = null;
+        } else {
+            WebView browser = new WebView();
+            webEngine = browser.getEngine();
+            scene = new Scene( new VBox( browser ) );
+        }
+    }
+
+    /**
+     * The scene that display this page.
+     *
+     * @return the scene or null in headless mode
+     */
+    Scene scene() {
+        return scene;
+    }
+
+    /**
+     * If the given URL or content is loaded in this page.
+     *
+     * @param url
+     *            the URL of the page
+     * @param content
+     *            the content of the page
+     * @return true, if loaded
+     */
+    boolean isLoaded( String url, String content ) {
+        return loaded && Objects.equals( url, loadedUrl ) && Objects.equals( content, loadedContent );
+    }
+
+    /**
+     * If any content is loaded in this page.
+     *
+     * @return true, if loaded
+     */
+    boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Load a page asynchronously and install the import functions.
+     *
+     * @param url
+     *            the URL of the page
+     * @param content
+     *            the content of the page, has priority over the URL
+     * @param annotations
+     *            the import functions
+     * @param onLoaded
+     *            called after the page was loaded
+     */
+    void load( String url, String content, @Nonnull Collection<ImportAnnotation> annotations, @Nonnull Runnable onLoaded ) {
+        // https://stackoverflow.com/questions/41654573/java-fx-javascript
+        loaded = false;
+        Worker<Void> worker = webEngine.getLoadWorker();
+        worker.stateProperty().addListener( new ChangeListener<Worker.State>() {
+            @Override
+            public void changed( ObservableValue<? extends Worker.State> obs, Worker.State old, Worker.State neww ) {
+                if( neww == Worker.State.SUCCEEDED ) {
+                    obs.removeListener( this );
+                    try {
+                        wasmImports = (JSObject)webEngine.executeScript( "wasmImports" );
+                    } catch( JSException e ) {
+                        webEngine.executeScript( "var wasmImports = {}" );
+                        wasmImports = (JSObject)webEngine.executeScript( "wasmImports" );
+                    }
+                    // recreate the annotation in a new page
+                    installScripts( annotations );
+                    webEngine.executeScript( ImportBatch.SCRIPT );
+                    batchHelper = (JSObject)webEngine.executeScript( "jwaBatch" );
+                    loadedUrl = url;
+                    loadedContent = content;
+                    snapshot = (String)((JSObject)webEngine.executeScript( "document.documentElement" )).getMember( "innerHTML" );
+                    loaded = true;
+                    onLoaded.run();
+                }
+            }
+        } );
+        if( content != null ) {
+            webEngine.loadContent( content );
+        } else {
+            webEngine.load( url );
+        }
+    }
+
+    /**
+     * Install the JavaScript functions in the wasmImports of this page with a single script execution.
+     *
+     * @param annos
+     *            the annotations
+     */
+    void installScripts( @Nonnull Collection<ImportAnnotation> annos ) {
+        StringBuilder script = new StringBuilder( "(function(w){var m;" );
+        String lastModule = null;
+        for( ImportAnnotation anno : annos ) {
+            if( !anno.module.equals( lastModule ) ) {
+                lastModule = anno.module;
+                script.append( "m=w." ).append( anno.module ).append( "||(w." ).append( anno.module ).append( "={});" );
+            }
+            if( anno.javaScript != null && !anno.javaScript.isEmpty() ) {
+                script.append( "m." ).append( anno.name ).append( '=' ).append( anno.javaScript ).append( ";\n" );
+            }
+            // without JavaScript the page must provide the function
+        }
+        script.append( "})(wasmImports)" );
+        webEngine.executeScript( script.toString() );
+    }
+
+    /**
+     * Get the JavaScript object of a module from the wasmImports of this page.
+     *
+     * @param moduleName
+     *            the name of the module
+     * @return the module object
+     */
+    JSObject module( String moduleName ) {
+        return (JSObject)wasmImports.getMember( moduleName );
+    }
+
+    /**
+     * Get the JavaScript helper object for the batching of void import calls in this page.
+     *
+     * @return the helper object
+     */
+    JSObject batchHelper() {
+        return batchHelper;
+    }
+
+    /**
+     * Restore the DOM of this page from the snapshot that was taken after loading. Only the content of the document
+     * element is restored. Global JavaScript variables, event listeners of the window and the document, running timers
+     * and changes of the wasmImports are not cleared. A test that depends on a clean JavaScript state must not reuse
+     * the page.
+     */
+    void reset() {
+        if( !loaded ) {
+            return;
+        }
+        JSObject root = (JSObject)webEngine.executeScript( "document.documentElement" );
+        root.setMember( "innerHTML", snapshot );
+    }
+}
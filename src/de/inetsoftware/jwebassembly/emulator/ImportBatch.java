@@ -0,0 +1,148 @@
+/*
+ * Copyright 2021 Volker Berlin (i-net software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.inetsoftware.jwebassembly.emulator;
+
+import java.util.Arrays;
+
+import javafx.application.Platform;
+import netscape.javascript.JSObject;
+
+/**
+ * Command buffer for calls of void import functions. The calls are collected and executed with a single crossing to
+ * JavaScript. The buffer is flushed before any non void import call, with an explicit flush, at the end of the main
+ * method and at the end of the current event of the JavaFX application thread. Exceptions of the JavaScript functions
+ * occur on flushing and not on the call.
+ * <p>
+ * The buffer is encoded as the arguments of a single call. The first argument is a layout string with pairs of
+ * function id and argument count followed by the arguments of all commands. JavaFX converts Java arrays very slowly
+ * so that the arguments are not passed as array.
+ *
+ * @author Volker Berlin
+ */
+@SuppressWarnings( "restriction" )
+class ImportBatch {
+
+    /**
+     * The JavaScript helper object with the registered functions, its modules and the executor of a buffer. The module
+     * is the this of a call like on an unbatched call.
+     */
+    static final String                SCRIPT   = "var jwaBatch={f:[],m:[],run:function(){" //
+                    + "var a=arguments,c=a[0].split(','),p=1;" //
+                    + "for(var i=0;i<c.length;i+=2){" //
+                    + "var n=+c[i+1],k=+c[i];" //
+                    + "this.f[k].apply(this.m[k],Array.prototype.slice.call(a,p,p+n));" //
+                    + "p+=n}}}";
+
+    /** the maximum count of arguments in the buffer before an automatic flush */
+    private static final int           MAX_ARGS = 1024;
+
+    private static final StringBuilder LAYOUT   = new StringBuilder();
+
+    private static Object[]            args     = new Object[64];
+
+    private static int                 size     = 1;                  // the first slot is reserved for the layout
+
+    private static int                 functionCount;
+
+    private static boolean             flushScheduled;
+
+    /**
+     * Register a function for batch execution in the current page.
+     *
+     * @param module
+     *            the module object of the function
+     * @param name
+     *            the name of the function
+     * @return the id of the function
+     */
+    static int register( JSObject module, String name ) {
+        JSObject batchHelper = JWebAssemblyEmulator.JavaFxApplication.batchHelper();
+        int id = functionCount++;
+        ((JSObject)batchHelper.getMember( "f" )).setSlot( id, module.getMember( name ) );
+        ((JSObject)batchHelper.getMember( "m" )).setSlot( id, module );
+        return id;
+    }
+
+    /**
+     * Add a call to the buffer.
+     *
+     * @param id
+     *            the id of the function from {@link #register(JSObject, String)}
+     * @param callArgs
+     *            the arguments of the call, already converted for JavaScript
+     */
+    static void add( int id, Object[] callArgs ) {
+        int count = callArgs.length;
+        if( size + count > args.length ) {
+            args = Arrays.copyOf( args, Math.max( args.length * 2, size + count ) );
+        }
+        System.arraycopy( callArgs, 0, args, size, count );
+        size += count;
+        if( LAYOUT.length() > 0 ) {
+            LAYOUT.append( ',' );
+        }
+        LAYOUT.append( id ).append( ',' ).append( count );
+
+        if( size > MAX_ARGS ) {
+            flush();
+        } else if( !flushScheduled ) {
+            // flush at the end of the current event
+            flushScheduled = true;
+            Platform.runLater( ImportBatch::flush );
+        }
+    }
+
+    /**
+     * Execute all buffered calls with a single crossing to JavaScript.
+     */
+    static void flush() {
+        flushScheduled = false;
+        if( LAYOUT.length() == 0 ) {
+            return;
+        }
+        Object[] callArgs = Arrays.copyOf( args, size );
+        callArgs[0] = LAYOUT.toString();
+        clearBuffer();
+        JWebAssemblyEmulator.JavaFxApplication.batchHelper().call( "run", callArgs );
+    }
+
+    /**
+     * If there are buffered calls.
+     *
+     * @return true, if a flush is needed
+     */
+    static boolean isPending() {
+        // a call without arguments changes only the layout
+        return LAYOUT.length() > 0;
+    }
+
+    /**
+     * Discard all buffered calls and registered functions. This is needed if a new page is loaded.
+     */
+    static void clear() {
+        clearBuffer();
+        functionCount = 0;
+    }
+
+    /**
+     * Discard all buffered calls.
+     */
+    private static void clearBuffer() {
+        Arrays.fill( args, 1, size, null );
+        size = 1;
+        LAYOUT.setLength( 0 );
+    }
+}
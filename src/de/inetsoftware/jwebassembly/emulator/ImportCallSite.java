@@ -0,0 +1,439 @@
+/*
+ * Copyright 2021 Volker Berlin (i-net software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.inetsoftware.jwebassembly.emulator;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import de.inetsoftware.jwebassembly.web.DOMString;
+import netscape.javascript.JSObject;
+
+/**
+ * The invokedynamic call site of a patched native method with Import annotation. On the first call the JavaScript
+ * module object of the import is resolved and bound to the call site. If the page is reloaded then all call sites are
+ * reset and resolve the module of the new page on the next call.
+ *
+ * @author Volker Berlin
+ */
+@SuppressWarnings( "restriction" )
+public class ImportCallSite extends MutableCallSite {
+
+    private static final MethodHandle      LINK;
+
+    private static final MethodHandle      CALL;
+
+    private static final MethodHandle      ENQUEUE;
+
+    private static final MethodHandle      TIMED_CALL;
+
+    private static final MethodHandle      COUNTED_ENQUEUE;
+
+    private static final MethodHandle      I32_FROM_INT;
+
+    private static final MethodHandle      I32_FROM_BOOLEAN;
+
+    private static final MethodHandle      FROM_DOMSTRING;
+
+    private static final MethodHandle      FROM_OBJECT;
+
+    private static final MethodHandle      COUNTED_FROM_DOMSTRING;
+
+    private static final MethodHandle      COUNTED_FROM_OBJECT;
+
+    private static final MethodHandle      TO_INT;
+
+    private static final MethodHandle      TO_BOOLEAN;
+
+    private static final MethodHandle      TO_LONG;
+
+    private static final MethodHandle      TO_FLOAT;
+
+    private static final MethodHandle      TO_DOUBLE;
+
+    private static final MethodHandle      TO_DOMSTRING;
+
+    /** all call sites that was created, weak to not prevent the unloading of classes */
+    private static final Set<ImportCallSite> SITES = Collections.synchronizedSet( Collections.newSetFromMap( new WeakHashMap<>() ) );
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodType generic = MethodType.methodType( Object.class, Object[].class );
+            LINK = lookup.findVirtual( ImportCallSite.class, "link", generic );
+            CALL = lookup.findStatic( ImportCallSite.class, "call", generic.insertParameterTypes( 0, JSObject.class, String.class ) );
+            ENQUEUE = lookup.findStatic( ImportCallSite.class, "enqueue", generic.insertParameterTypes( 0, int.class ) );
+            TIMED_CALL = lookup.findStatic( ImportCallSite.class, "call", generic.insertParameterTypes( 0, ImportMetrics.class, JSObject.class, String.class ) );
+            COUNTED_ENQUEUE = lookup.findStatic( ImportCallSite.class, "enqueue", generic.insertParameterTypes( 0, ImportMetrics.class, int.class ) );
+            I32_FROM_INT = lookup.findStatic( ImportCallSite.class, "i32", MethodType.methodType( Object.class, int.class ) );
+            I32_FROM_BOOLEAN = lookup.findStatic( ImportCallSite.class, "i32", MethodType.methodType( Object.class, boolean.class ) );
+            FROM_DOMSTRING = lookup.findStatic( ImportCallSite.class, "fromDOMString", MethodType.methodType( Object.class, DOMString.class ) );
+            FROM_OBJECT = lookup.findStatic( ImportCallSite.class, "fromObject", MethodType.methodType( Object.class, Object.class ) );
+            COUNTED_FROM_DOMSTRING = lookup.findStatic( ImportCallSite.class, "fromDOMString", MethodType.methodType( Object.class, ImportMetrics.class, DOMString.class ) );
+            COUNTED_FROM_OBJECT = lookup.findStatic( ImportCallSite.class, "fromObject", MethodType.methodType( Object.class, ImportMetrics.class, Object.class ) );
+
+            Class<?> bridge = JWebAssemblyEmulator.JavaFxApplication.class;
+            TO_INT = lookup.findStatic( bridge, "toInt", MethodType.methodType( int.class, Object.class ) );
+            TO_BOOLEAN = lookup.findStatic( bridge, "toBoolean", MethodType.methodType( boolean.class, Object.class ) );
+            TO_LONG = lookup.findStatic( bridge, "toLong", MethodType.methodType( long.class, Object.class ) );
+            TO_FLOAT = lookup.findStatic( bridge, "toFloat", MethodType.methodType( float.class, Object.class ) );
+            TO_DOUBLE = lookup.findStatic( bridge, "toDouble", MethodType.methodType( double.class, Object.class ) );
+            TO_DOMSTRING = lookup.findStatic( bridge, "toDOMString", MethodType.methodType( DOMString.class, Object.class ) );
+        } catch( ReflectiveOperationException ex ) {
+            throw new ExceptionInInitializerError( ex );
+        }
+    }
+
+    private final String        moduleName;
+
+    private final String        name;
+
+    private final ImportMetrics metrics;
+
+    private final MethodHandle  unlinked;
+
+    /**
+     * Create a new unlinked call site.
+     *
+     * @param type
+     *            the type of the patched native method
+     * @param moduleName
+     *            the name of the module
+     * @param name
+     *            the name of the function
+     * @param metrics
+     *            the metrics to record or null
+     */
+    private ImportCallSite( MethodType type, String moduleName, String name, @Nullable ImportMetrics metrics ) {
+        super( type );
+        this.moduleName = moduleName;
+        this.name = name;
+        this.metrics = metrics;
+        unlinked = adapt( LINK.bindTo( this ) );
+        setTarget( unlinked );
+        SITES.add( this );
+    }
+
+    /**
+     * The bootstrap method of the invokedynamic instruction in the patched native methods.
+     *
+     * @param lookup
+     *            the lookup of the caller, not used
+     * @param callName
+     *            the name of the invokedynamic instruction, not used
+     * @param type
+     *            the type of the patched native method
+     * @param moduleName
+     *            the name of the module
+     * @param name
+     *            the name of the function
+     * @param javaScript
+     *            the JavaScript code of the function, empty if the page provide the function
+     * @return the call site
+     */
+    public static CallSite bootstrap( MethodHandles.Lookup lookup, String callName, MethodType type, String moduleName, String name, String javaScript ) {
+        JWebAssemblyEmulator.JavaFxApplication.registerScript( moduleName, name, javaScript.isEmpty() ? null : javaScript );
+        return new ImportCallSite( type, moduleName, name, null );
+    }
+
+    /**
+     * The bootstrap method of the invokedynamic instruction in the patched native methods if the javaagent was started
+     * with the option "metrics". The call site records the calls in the {@link ImportMetrics} of the import function.
+     *
+     * @param lookup
+     *            the lookup of the caller, not used
+     * @param callName
+     *            the name of the invokedynamic instruction, not used
+     * @param type
+     *            the type of the patched native method
+     * @param moduleName
+     *            the name of the module
+     * @param name
+     *            the name of the function
+     * @param javaScript
+     *            the JavaScript code of the function, empty if the page provide the function
+     * @return the call site
+     */
+    public static CallSite bootstrapWithMetrics( MethodHandles.Lookup lookup, String callName, MethodType type, String moduleName, String name, String javaScript ) {
+        JWebAssemblyEmulator.JavaFxApplication.registerScript( moduleName, name, javaScript.isEmpty() ? null : javaScript );
+        return new ImportCallSite( type, moduleName, name, ImportMetrics.get( moduleName, name ) );
+    }
+
+    /**
+     * Reset all call sites to the unlinked state. This must be called if the page was reloaded because the module
+     * objects are from the old page.
+     */
+    static void invalidateAll() {
+        MutableCallSite[] sites;
+        synchronized( SITES ) {
+            sites = SITES.toArray( new MutableCallSite[SITES.size()] );
+        }
+        for( MutableCallSite site : sites ) {
+            site.setTarget( ((ImportCallSite)site).unlinked );
+        }
+        MutableCallSite.syncAll( sites );
+    }
+
+    /**
+     * The target of an unlinked call site. Resolve the module object, bind it to the call site and call the function.
+     * If batching is enabled then void functions are bound to the command buffer.
+     *
+     * @param args
+     *            the arguments
+     * @return the return value if any
+     */
+    private Object link( Object[] args ) {
+        JSObject module = JWebAssemblyEmulator.JavaFxApplication.module( moduleName );
+        if( type().returnType() == void.class && JWebAssemblyEmulator.isBatchVoidImports() ) {
+            int id = ImportBatch.register( module, name );
+            if( metrics != null ) {
+                setTarget( adapt( MethodHandles.insertArguments( COUNTED_ENQUEUE, 0, metrics, id ) ) );
+                return enqueue( metrics, id, args );
+            }
+            setTarget( adapt( MethodHandles.insertArguments( ENQUEUE, 0, id ) ) );
+            return enqueue( id, args );
+        }
+        if( metrics != null ) {
+            setTarget( adapt( MethodHandles.insertArguments( TIMED_CALL, 0, metrics, module, name ) ) );
+            return call( metrics, module, name, args );
+        }
+        setTarget( adapt( MethodHandles.insertArguments( CALL, 0, module, name ) ) );
+        return call( module, name, args );
+    }
+
+    /**
+     * The target of a linked call site. Call the function in a single crossing to JavaScript.
+     *
+     * @param module
+     *            the bound module object
+     * @param name
+     *            the name of the function
+     * @param args
+     *            the arguments
+     * @return the return value if any
+     */
+    private static Object call( JSObject module, String name, Object[] args ) {
+        if( ImportBatch.isPending() ) {
+            ImportBatch.flush();
+        }
+        return module.call( name, args );
+    }
+
+    /**
+     * The target of a linked void call site in batch mode. Add the call to the command buffer.
+     *
+     * @param id
+     *            the id of the function in the command buffer
+     * @param args
+     *            the arguments
+     * @return always null
+     */
+    private static Object enqueue( int id, Object[] args ) {
+        ImportBatch.add( id, args );
+        return null;
+    }
+
+    /**
+     * The target of a linked call site with metrics. Measure the time of the crossing to JavaScript.
+     *
+     * @param metrics
+     *            the metrics of the import function
+     * @param module
+     *            the bound module object
+     * @param name
+     *            the name of the function
+     * @param args
+     *            the arguments
+     * @return the return value if any
+     */
+    private static Object call( ImportMetrics metrics, JSObject module, String name, Object[] args ) {
+        if( ImportBatch.isPending() ) {
+            ImportBatch.flush();
+        }
+        long start = System.nanoTime();
+        try {
+            return module.call( name, args );
+        } finally {
+            metrics.record( System.nanoTime() - start );
+        }
+    }
+
+    /**
+     * The target of a linked void call site in batch mode with metrics. Only the calls are counted because the time is
+     * spent on flushing of the command buffer.
+     *
+     * @param metrics
+     *            the metrics of the import function
+     * @param id
+     *            the id of the function in the command buffer
+     * @param args
+     *            the arguments
+     * @return always null
+     */
+    private static Object enqueue( ImportMetrics metrics, int id, Object[] args ) {
+        metrics.recordCall();
+        ImportBatch.add( id, args );
+        return null;
+    }
+
+    /**
+     * Adapt a generic target with an argument array to the type of this call site. Like in WebAssembly the types
+     * boolean, byte, char and short are passed as i32 (Integer). JavaFX does not support our marker interface
+     * DOMString. Parameters that are declared as DOMString are converted without any check. Only parameters with a
+     * declared type that can hold a DOMString at runtime are checked on every call. All other parameters are passed
+     * without conversion.
+     *
+     * @param target
+     *            the generic target
+     * @return the adapted method handle
+     */
+    @Nonnull
+    private MethodHandle adapt( MethodHandle target ) {
+        MethodType type = type();
+        int count = type.parameterCount();
+        MethodHandle handle = target.asCollector( Object[].class, count );
+        for( int i = 0; i < count; i++ ) {
+            Class<?> paramType = type.parameterType( i );
+            if( paramType == boolean.class ) {
+                handle = MethodHandles.filterArguments( handle, i, I32_FROM_BOOLEAN );
+            } else if( paramType == byte.class || paramType == char.class || paramType == short.class ) {
+                handle = MethodHandles.filterArguments( handle, i, I32_FROM_INT.asType( MethodType.methodType( Object.class, paramType ) ) );
+            } else if( paramType == DOMString.class ) {
+                MethodHandle filter = metrics == null ? FROM_DOMSTRING : COUNTED_FROM_DOMSTRING.bindTo( metrics );
+                handle = MethodHandles.filterArguments( handle, i, filter );
+            } else if( canHoldDOMString( paramType ) ) {
+                MethodHandle filter = metrics == null ? FROM_OBJECT : COUNTED_FROM_OBJECT.bindTo( metrics );
+                handle = MethodHandles.filterArguments( handle, i, filter.asType( MethodType.methodType( Object.class, paramType ) ) );
+            }
+        }
+        // box all other primitive types
+        handle = handle.asType( type.changeReturnType( Object.class ) );
+
+        Class<?> returnType = type.returnType();
+        if( returnType == boolean.class ) {
+            handle = MethodHandles.filterReturnValue( handle, TO_BOOLEAN );
+        } else if( returnType == long.class ) {
+            handle = MethodHandles.filterReturnValue( handle, TO_LONG );
+        } else if( returnType == float.class ) {
+            handle = MethodHandles.filterReturnValue( handle, TO_FLOAT );
+        } else if( returnType == double.class ) {
+            handle = MethodHandles.filterReturnValue( handle, TO_DOUBLE );
+        } else if( returnType == DOMString.class ) {
+            handle = MethodHandles.filterReturnValue( handle, TO_DOMSTRING );
+        } else if( returnType.isPrimitive() && returnType != void.class ) {
+            // int, byte, char and short
+            handle = MethodHandles.filterReturnValue( handle, TO_INT );
+            return MethodHandles.explicitCastArguments( handle, type );
+        }
+        // void drop the return value and all other types are casted
+        return handle.asType( type );
+    }
+
+    /**
+     * If a parameter of the given type can hold a DOMString at runtime.
+     *
+     * @param paramType
+     *            the declared type of the parameter
+     * @return true, if a check is needed on every call
+     */
+    private static boolean canHoldDOMString( Class<?> paramType ) {
+        return !paramType.isPrimitive() && !paramType.isArray() && !Modifier.isFinal( paramType.getModifiers() );
+    }
+
+    /**
+     * Convert a parameter that is declared as DOMString.
+     *
+     * @param value
+     *            the value
+     * @return the string value for JavaScript
+     */
+    private static Object fromDOMString( DOMString value ) {
+        return value == null ? null : value.toString();
+    }
+
+    /**
+     * Convert a parameter that can hold a DOMString at runtime.
+     *
+     * @param value
+     *            the value
+     * @return the value for JavaScript
+     */
+    private static Object fromObject( Object value ) {
+        return value instanceof DOMString ? value.toString() : value;
+    }
+
+    /**
+     * Convert a parameter that is declared as DOMString and count the conversion.
+     *
+     * @param metrics
+     *            the metrics of the import function
+     * @param value
+     *            the value
+     * @return the string value for JavaScript
+     */
+    private static Object fromDOMString( ImportMetrics metrics, DOMString value ) {
+        metrics.recordConversion();
+        return fromDOMString( value );
+    }
+
+    /**
+     * Convert a parameter that can hold a DOMString at runtime and count the conversion if the value is a DOMString.
+     *
+     * @param metrics
+     *            the metrics of the import function
+     * @param value
+     *            the value
+     * @return the value for JavaScript
+     */
+    private static Object fromObject( ImportMetrics metrics, Object value ) {
+        if( value instanceof DOMString ) {
+            metrics.recordConversion();
+            return value.toString();
+        }
+        return value;
+    }
+
+    /**
+     * Box an i32 value.
+     *
+     * @param value
+     *            the value
+     * @return the boxed value
+     */
+    private static Object i32( int value ) {
+        return Integer.valueOf( value );
+    }
+
+    /**
+     * Box a boolean value as i32 value.
+     *
+     * @param value
+     *            the value
+     * @return the boxed value
+     */
+    private static Object i32( boolean value ) {
+        return Integer.valueOf( value ? 1 : 0 );
+    }
+}
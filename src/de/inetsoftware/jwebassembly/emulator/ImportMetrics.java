@@ -0,0 +1,370 @@
+/*
+ * Copyright 2021 Volker Berlin (i-net software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.inetsoftware.jwebassembly.emulator;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * The metrics of a single import function in the emulator. The values are recorded lock free from the call sites. All
+ * instances are published as JMX MBeans with the name "de.inetsoftware.jwebassembly:type=Import,module=...,name=...".
+ * The metrics of the {@link ImportProbe probes} of a patched method use the type "Probe", the class name as module and
+ * the method as name.
+ *
+ * @author Volker Berlin
+ */
+class ImportMetrics implements ImportMetricsMBean {
+
+    private static final ConcurrentHashMap<String, ImportMetrics> METRICS = new ConcurrentHashMap<>();
+
+    private static final ConcurrentHashMap<String, ImportMetrics> PROBES  = new ConcurrentHashMap<>();
+
+    /** the bits of the sub buckets, every power of two range is split in 2^SUB_BITS linear sub buckets */
+    private static final int                                      SUB_BITS  = 3;
+
+    /** count of sub buckets of a power of two range */
+    private static final int                                      SUB_COUNT = 1 << SUB_BITS;
+
+    /** count of histogram buckets, the times 0 to SUB_COUNT - 1 nanoseconds have its own bucket */
+    private static final int                                      BUCKETS   = (64 - SUB_BITS + 1) * SUB_COUNT;
+
+    private final String                                          module;
+
+    private final String                                          name;
+
+    private final LongAdder                                       calls       = new LongAdder();
+
+    private final LongAdder                                       nanos       = new LongAdder();
+
+    private final LongAdder                                       conversions = new LongAdder();
+
+    private final AtomicLongArray                                 histogram   = new AtomicLongArray( BUCKETS );
+
+    /**
+     * Create an instance.
+     *
+     * @param module
+     *            the module name of the import
+     * @param name
+     *            the function name of the import
+     */
+    private ImportMetrics( String module, String name ) {
+        this.module = module;
+        this.name = name;
+    }
+
+    /**
+     * Get the metrics of an import function and register it as MBean on first use.
+     *
+     * @param module
+     *            the module name of the import
+     * @param name
+     *            the function name of the import
+     * @return the metrics
+     */
+    @Nonnull
+    static ImportMetrics get( String module, String name ) {
+        return get( METRICS, "Import", module, name );
+    }
+
+    /**
+     * Get the metrics of the probe of a patched import method and register it as MBean on first use.
+     *
+     * @param className
+     *            the name of the class
+     * @param method
+     *            the name and signature of the method
+     * @return the metrics
+     */
+    @Nonnull
+    static ImportMetrics probe( String className, String method ) {
+        return get( PROBES, "Probe", className, method );
+    }
+
+    /**
+     * Get the metrics from a map and register it as MBean on first use.
+     *
+     * @param map
+     *            the metrics of the type
+     * @param type
+     *            the type of the MBean
+     * @param module
+     *            the module name of the import or the class name of a probe
+     * @param name
+     *            the function name of the import or the method of a probe
+     * @return the metrics
+     */
+    @Nonnull
+    private static ImportMetrics get( ConcurrentHashMap<String, ImportMetrics> map, String type, String module, String name ) {
+        return map.computeIfAbsent( module + '.' + name, key -> {
+            ImportMetrics metrics = new ImportMetrics( module, name );
+            try {
+                ObjectName objectName = new ObjectName( "de.inetsoftware.jwebassembly:type=" + type + ",module=" + ObjectName.quote( module ) + ",name=" + ObjectName.quote( name ) );
+                ManagementFactory.getPlatformMBeanServer().registerMBean( metrics, objectName );
+            } catch( JMException ex ) {
+                ex.printStackTrace();
+            }
+            return metrics;
+        } );
+    }
+
+    /**
+     * Print a report of all metrics when the JVM exits.
+     *
+     * @param file
+     *            the file for the report or null for System.out
+     */
+    static void reportOnExit( @Nullable String file ) {
+        Runtime.getRuntime().addShutdownHook( new Thread( () -> {
+            if( file == null ) {
+                PrintWriter writer = new PrintWriter( System.out );
+                report( writer );
+                writer.flush();
+                return;
+            }
+            try( PrintWriter writer = new PrintWriter( new OutputStreamWriter( new FileOutputStream( file ), StandardCharsets.UTF_8 ) ) ) {
+                report( writer );
+            } catch( IOException ex ) {
+                ex.printStackTrace();
+            }
+        }, "JWebAssembly Metrics Report" ) );
+    }
+
+    /**
+     * Write a report of all metrics sorted by the total time.
+     *
+     * @param writer
+     *            the target
+     */
+    static void report( PrintWriter writer ) {
+        AgentMetrics.INSTANCE.report( writer );
+        if( !METRICS.isEmpty() || PROBES.isEmpty() ) {
+            writer.println( "JWebAssembly emulator import metrics (times in microseconds, ~ interpolated in histogram buckets of 1/8 power of two)" );
+            report( writer, METRICS, "import" );
+        }
+        if( !PROBES.isEmpty() ) {
+            writer.println( "JWebAssembly emulator probes of the patched methods (times in microseconds, only sampled calls, ~ interpolated in histogram buckets of 1/8 power of two)" );
+            report( writer, PROBES, "method" );
+        }
+    }
+
+    /**
+     * Write a table of metrics sorted by the total time.
+     *
+     * @param writer
+     *            the target
+     * @param map
+     *            the metrics
+     * @param title
+     *            the title of the first column
+     */
+    private static void report( PrintWriter writer, ConcurrentHashMap<String, ImportMetrics> map, String title ) {
+        List<ImportMetrics> list = new ArrayList<>( map.values() );
+        list.sort( Comparator.comparingLong( ImportMetrics::getTotalTime ).reversed() );
+        writer.println( String.format( "%-40s %10s %12s %10s %10s %10s %10s %12s", title, "calls", "total", "mean", "~median", "~p90", "~p99", "conversions" ) );
+        for( ImportMetrics metrics : list ) {
+            writer.println( String.format( "%-40s %10d %12d %10.1f %10.1f %10.1f %10.1f %12d", metrics.module + '.' + metrics.name, metrics.getCallCount(), metrics.getTotalTime(), metrics.getMeanTime(), metrics.getMedianTime(), metrics.get90thPercentileTime(), metrics.get99thPercentileTime(), metrics.getConversionCount() ) );
+        }
+    }
+
+    /**
+     * Record a call.
+     *
+     * @param time
+     *            the duration of the call in nanoseconds
+     */
+    void record( long time ) {
+        calls.increment();
+        nanos.add( time );
+        histogram.incrementAndGet( bucket( time ) );
+    }
+
+    /**
+     * Get the histogram bucket of a time. The buckets are log-linear. Every power of two range is split in SUB_COUNT
+     * buckets of the same width, so the width of a bucket is at most 1/8 of its lower bound.
+     *
+     * @param time
+     *            the duration in nanoseconds
+     * @return the index of the bucket
+     */
+    private static int bucket( long time ) {
+        if( time < SUB_COUNT ) {
+            return (int)Math.max( 0, time );
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros( time );
+        int sub = (int)(time >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+        return (exponent - SUB_BITS + 1) * SUB_COUNT + sub;
+    }
+
+    /**
+     * Get the lower bound of a histogram bucket.
+     *
+     * @param bucket
+     *            the index of the bucket
+     * @return the smallest time of the bucket in nanoseconds
+     */
+    private static double lowerBound( int bucket ) {
+        if( bucket < SUB_COUNT ) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_COUNT + SUB_BITS - 1;
+        return Math.scalb( (double)(SUB_COUNT + bucket % SUB_COUNT), exponent - SUB_BITS );
+    }
+
+    /**
+     * Record a call without duration, for example if the call was batched.
+     */
+    void recordCall() {
+        calls.increment();
+    }
+
+    /**
+     * Record an argument conversion.
+     */
+    void recordConversion() {
+        conversions.increment();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getModule() {
+        return module;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getCallCount() {
+        return calls.sum();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getTotalTime() {
+        return nanos.sum() / 1000;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getMeanTime() {
+        long count = calls.sum();
+        return count == 0 ? 0 : nanos.sum() / 1000.0 / count;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getMedianTime() {
+        return percentile( 0.5 );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double get90thPercentileTime() {
+        return percentile( 0.9 );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double get99thPercentileTime() {
+        return percentile( 0.99 );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getConversionCount() {
+        return conversions.sum();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset() {
+        calls.reset();
+        nanos.reset();
+        conversions.reset();
+        for( int i = 0; i < BUCKETS; i++ ) {
+            histogram.set( i, 0 );
+        }
+    }
+
+    /**
+     * Calculate a percentile from the histogram. The value is interpolated linear in the bucket of the percentile.
+     *
+     * @param fraction
+     *            the percentile as fraction
+     * @return the estimated time in microseconds
+     */
+    private double percentile( double fraction ) {
+        long total = 0;
+        for( int i = 0; i < BUCKETS; i++ ) {
+            total += histogram.get( i );
+        }
+        if( total == 0 ) {
+            return 0;
+        }
+        double limit = total * fraction;
+        long count = 0;
+        for( int i = 0; i < BUCKETS; i++ ) {
+            long value = histogram.get( i );
+            if( value > 0 && count + value >= limit ) {
+                double lower = lowerBound( i );
+                double upper = i + 1 < BUCKETS ? lowerBound( i + 1 ) : Long.MAX_VALUE;
+                return (lower + (upper - lower) * (limit - count) / value) / 1000;
+            }
+            count += value;
+        }
+        return Long.MAX_VALUE / 1000.0;
+    }
+}
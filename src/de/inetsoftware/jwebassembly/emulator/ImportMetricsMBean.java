@@ -0,0 +1,92 @@
+/*
+ * Copyright 2021 Volker Berlin (i-net software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.inetsoftware.jwebassembly.emulator;
+
+/**
+ * The JMX interface of the metrics of an import function in the emulator.
+ *
+ * @author Volker Berlin
+ */
+public interface ImportMetricsMBean {
+
+    /**
+     * The module name of the import.
+     *
+     * @return the module
+     */
+    String getModule();
+
+    /**
+     * The function name of the import.
+     *
+     * @return the name
+     */
+    String getName();
+
+    /**
+     * The count of calls.
+     *
+     * @return the count
+     */
+    long getCallCount();
+
+    /**
+     * The cumulative time of all calls in JavaScript.
+     *
+     * @return the time in microseconds
+     */
+    long getTotalTime();
+
+    /**
+     * The average time of a call.
+     *
+     * @return the time in microseconds
+     */
+    double getMeanTime();
+
+    /**
+     * The median of the call time. The value is interpolated in a histogram bucket with a width of 1/8 power of two.
+     *
+     * @return the time in microseconds
+     */
+    double getMedianTime();
+
+    /**
+     * The 90th percentile of the call time. The value is interpolated in a histogram bucket with a width of 1/8 power of two.
+     *
+     * @return the time in microseconds
+     */
+    double get90thPercentileTime();
+
+    /**
+     * The 99th percentile of the call time. The value is interpolated in a histogram bucket with a width of 1/8 power of two.
+     *
+     * @return the time in microseconds
+     */
+    double get99thPercentileTime();
+
+    /**
+     * The count of DOMString arguments that was converted.
+     *
+     * @return the count
+     */
+    long getConversionCount();
+
+    /**
+     * Reset all values.
+     */
+    void reset();
+}
@@ -0,0 +1,359 @@
+/*
+ * Copyright 2021 Volker Berlin (i-net software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.inetsoftware.jwebassembly.emulator;
+
+import static org.objectweb.asm.Opcodes.V1_7;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+
+/**
+ * Patch the native methods with Import annotations ahead of time. This is the same transformation that the javaagent
+ * does at load time. The patched classes register their JavaScript functions on the first call so that the emulator
+ * can run without the javaagent.
+ * <p>
+ * Usage: <code>ImportPatcher [-options agentOptions] [-threads count] input output [input output ...]</code>
+ * <p>
+ * An input can be a directory or a jar file. All files of an input directory or entries of an input jar are copied to
+ * the output, the classes with Import annotations are replaced with the patched version. The classes are scanned and
+ * patched in parallel on a fork join pool, by default with a thread for every processor. The options are the same as
+ * the options of the javaagent, for example "metrics".
+ * Class files before Java 7 are not patched because they can not use invokedynamic and require the javaagent. In a
+ * Maven build the patcher can be called with the exec-maven-plugin in the phase process-classes.
+ *
+ * @author Volker Berlin
+ */
+public class ImportPatcher {
+
+    /** the count of jar entries that are hold in memory at the same time */
+    private static final int BATCH_SIZE = 1024;
+
+    /**
+     * Patch the native methods with Import annotations of a class.
+     *
+     * @param className
+     *            the internal name of the class
+     * @param classfileBuffer
+     *            the original class file
+     * @param options
+     *            the options of the agent
+     * @param annotations
+     *            container for the found Import annotations, key is method name with signature
+     * @return the patched class file or null if the class has no Import annotations
+     */
+    @Nullable
+    static byte[] patch( String className, byte[] classfileBuffer, @Nonnull EmulatorOptions options, @Nonnull Map<String, ImportAnnotation> annotations ) {
+        ClassReader cr = new ClassReader( classfileBuffer );
+
+        // find Import annotations
+        ImportAnnotationClassVisitor visitor = new ImportAnnotationClassVisitor( className, annotations );
+        cr.accept( visitor, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES );
+        if( annotations.isEmpty() ) {
+            return null;
+        }
+
+        // if there Import annotations then patch the code
+        // The generated code of the import methods has no branches and therefore no stack map frames. All other
+        // methods are copied with its frames from the ClassReader. COMPUTE_FRAMES is not needed and would be slower
+        // and can load classes with ClassWriter.getCommonSuperClass while the class loader is inside of the agent.
+        ClassWriter cw = new ClassWriter( cr, ClassWriter.COMPUTE_MAXS );
+        ClassVisitor cv = new PatchImportClassVisitor( cw, annotations, options );
+        cr.accept( cv, 0 );
+        return cw.toByteArray();
+    }
+
+    /**
+     * Start the patcher.
+     *
+     * @param args
+     *            the command line arguments
+     * @throws Exception
+     *             if any error occur
+     */
+    public static void main( String[] args ) throws Exception {
+        EmulatorOptions options = new EmulatorOptions();
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<String> paths = new ArrayList<>();
+        for( int i = 0; i < args.length; i++ ) {
+            if( "-options".equals( args[i] ) && i + 1 < args.length ) {
+                options = EmulatorOptions.parse( args[++i] );
+            } else if( "-threads".equals( args[i] ) && i + 1 < args.length ) {
+                threads = parseThreads( args[++i] );
+                if( threads <= 0 ) {
+                    usage();
+                }
+            } else {
+                paths.add( args[i] );
+            }
+        }
+        if( paths.isEmpty() || paths.size() % 2 != 0 ) {
+            usage();
+        }
+        ForkJoinPool pool = new ForkJoinPool( threads );
+        try {
+            for( int i = 0; i < paths.size(); i += 2 ) {
+                Path input = Paths.get( paths.get( i ) );
+                Path output = Paths.get( paths.get( i + 1 ) );
+                long start = System.nanoTime();
+                int count = Files.isRegularFile( input ) ? patchJar( input, output, options, pool ) : patchDirectory( input, output, options, pool );
+                System.out.println( "JWebAssembly: " + count + " classes patched from " + input + " to " + output + " in " + (System.nanoTime() - start) / 1000000 + " ms" );
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Copy all files of a directory and patch the classes with Import annotations.
+     *
+     * @param input
+     *            the input directory
+     * @param output
+     *            the output directory
+     * @param options
+     *            the options
+     * @param pool
+     *            the threads for the patching
+     * @return the count of patched classes
+     * @throws Exception
+     *             if any error occur
+     */
+    private static int patchDirectory( Path input, Path output, EmulatorOptions options, ForkJoinPool pool ) throws Exception {
+        if( !Files.isDirectory( input ) ) {
+            // for example a source set without classes
+            return 0;
+        }
+        List<Path> files;
+        try( Stream<Path> stream = Files.walk( input ) ) {
+            files = stream.filter( Files::isRegularFile ).collect( Collectors.toList() );
+        }
+        List<Callable<Boolean>> tasks = new ArrayList<>();
+        for( Path file : files ) {
+            tasks.add( () -> {
+                String relative = input.relativize( file ).toString().replace( '\\', '/' );
+                Path target = output.resolve( relative );
+                Files.createDirectories( target.getParent() );
+                byte[] patched = relative.endsWith( ".class" ) ? patchClass( relative, Files.readAllBytes( file ), options ) : null;
+                if( patched != null ) {
+                    Files.write( target, patched );
+                    return true;
+                }
+                Files.copy( file, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES );
+                return false;
+            } );
+        }
+        int count = 0;
+        for( Future<Boolean> result : pool.invokeAll( tasks ) ) {
+            if( getResult( result ) ) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Copy all entries of a jar file and patch the classes with Import annotations. The entries are read and patched
+     * in parallel and written in the original order. The output is written to a temporary file and renamed at the
+     * end, so that a build never see a partial jar file. Signature files are not copied because the signature of the
+     * patched classes is invalid.
+     *
+     * @param input
+     *            the input jar file
+     * @param output
+     *            the output jar file
+     * @param options
+     *            the options
+     * @param pool
+     *            the threads for the patching
+     * @return the count of patched classes
+     * @throws Exception
+     *             if any error occur
+     */
+    private static int patchJar( Path input, Path output, EmulatorOptions options, ForkJoinPool pool ) throws Exception {
+        Path parent = output.toAbsolutePath().getParent();
+        Files.createDirectories( parent );
+        Path temp = Files.createTempFile( parent, output.getFileName().toString(), ".tmp" );
+        AtomicInteger count = new AtomicInteger();
+        try {
+            try( ZipFile zip = new ZipFile( input.toFile() ); //
+                            ZipOutputStream out = new ZipOutputStream( new BufferedOutputStream( Files.newOutputStream( temp ), 65536 ) ) ) {
+                List<? extends ZipEntry> entries = Collections.list( zip.entries() );
+                // the batches limit the memory for the bytes of the entries
+                for( int start = 0; start < entries.size(); start += BATCH_SIZE ) {
+                    List<? extends ZipEntry> batch = entries.subList( start, Math.min( start + BATCH_SIZE, entries.size() ) );
+                    List<Callable<byte[]>> tasks = new ArrayList<>();
+                    for( ZipEntry entry : batch ) {
+                        tasks.add( () -> {
+                            if( entry.isDirectory() ) {
+                                return null;
+                            }
+                            byte[] bytes;
+                            try( InputStream stream = zip.getInputStream( entry ) ) {
+                                bytes = ReplaceIndex.readAll( stream );
+                            }
+                            byte[] patched = entry.getName().endsWith( ".class" ) ? patchClass( entry.getName(), bytes, options ) : null;
+                            if( patched == null ) {
+                                return bytes;
+                            }
+                            count.incrementAndGet();
+                            return patched;
+                        } );
+                    }
+                    List<Future<byte[]>> results = pool.invokeAll( tasks );
+                    for( int i = 0; i < batch.size(); i++ ) {
+                        ZipEntry entry = batch.get( i );
+                        if( isSignature( entry.getName() ) ) {
+                            continue;
+                        }
+                        byte[] bytes = getResult( results.get( i ) );
+                        ZipEntry newEntry = new ZipEntry( entry.getName() );
+                        newEntry.setTime( entry.getTime() );
+                        out.putNextEntry( newEntry );
+                        if( bytes != null ) {
+                            out.write( bytes );
+                        }
+                        out.closeEntry();
+                    }
+                }
+            }
+            Files.move( temp, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+        } finally {
+            Files.deleteIfExists( temp );
+        }
+        return count.get();
+    }
+
+    /**
+     * Patch a single class file if it has Import annotations.
+     *
+     * @param fileName
+     *            the file name of the class relative to the root of the classpath entry
+     * @param bytes
+     *            the class file
+     * @param options
+     *            the options
+     * @return the patched class file or null if not patched
+     */
+    @Nullable
+    private static byte[] patchClass( String fileName, byte[] bytes, EmulatorOptions options ) {
+        String className = fileName.substring( 0, fileName.length() - 6 );
+        if( className.startsWith( "META-INF/versions/" ) ) {
+            // a class of a multi release jar
+            className = className.substring( className.indexOf( '/', 18 ) + 1 );
+        }
+        if( !options.accept( className ) || !ImportPrefilter.mayHaveImport( bytes ) ) {
+            return null;
+        }
+        if( majorVersion( bytes ) < (V1_7 & 0xFFFF) ) {
+            System.err.println( "JWebAssembly: class file before Java 7 requires the javaagent: " + className );
+            return null;
+        }
+        return patch( className, bytes, options, new HashMap<>() );
+    }
+
+    /**
+     * Get the result of a task and unwrap the exception of the task.
+     *
+     * @param result
+     *            the finished task
+     * @return the result
+     * @throws Exception
+     *             the exception of the task
+     */
+    private static <T> T getResult( Future<T> result ) throws Exception {
+        try {
+            return result.get();
+        } catch( ExecutionException ex ) {
+            Throwable cause = ex.getCause();
+            throw cause instanceof Exception ? (Exception)cause : ex;
+        }
+    }
+
+    /**
+     * If the entry is a file of the jar signature.
+     *
+     * @param name
+     *            the name of the entry
+     * @return true, if signature file
+     */
+    private static boolean isSignature( String name ) {
+        if( !name.startsWith( "META-INF/" ) || name.indexOf( '/', 9 ) >= 0 ) {
+            return false;
+        }
+        return name.endsWith( ".SF" ) || name.endsWith( ".RSA" ) || name.endsWith( ".DSA" ) || name.endsWith( ".EC" );
+    }
+
+    /**
+     * Parse the value of the option -threads.
+     *
+     * @param value
+     *            the value
+     * @return the count of threads or 0 if the value is invalid
+     */
+    private static int parseThreads( String value ) {
+        try {
+            return Integer.parseInt( value );
+        } catch( NumberFormatException ex ) {
+            return 0;
+        }
+    }
+
+    /**
+     * Print the usage of the command line and exit.
+     */
+    private static void usage() {
+        System.err.println( "Usage: ImportPatcher [-options agentOptions] [-threads count] input output [input output ...]" );
+        System.exit( 1 );
+    }
+
+    /**
+     * Read the major version of a class file.
+     *
+     * @param bytes
+     *            the class file
+     * @return the major version
+     */
+    private static int majorVersion( byte[] bytes ) {
+        return bytes.length < 8 ? 0 : ((bytes[6] & 0xFF) << 8) | (bytes[7] & 0xFF);
+    }
+}
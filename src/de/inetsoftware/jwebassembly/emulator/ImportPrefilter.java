@@ -0,0 +1,159 @@
+/*
+ * Copyright 2021 Volker Berlin (i-net software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.inetsoftware.jwebassembly.emulator;
+
+import java.nio.charset.StandardCharsets;
+
+import org.objectweb.asm.Type;
+
+import de.inetsoftware.jwebassembly.api.annotation.Import;
+
+/**
+ * A fast check of the raw bytes of a class file before any ASM visitor runs. A class with an Import annotation must
+ * have the descriptor of the annotation as UTF8 entry in its constant pool. Most classes that the JVM loads do not have
+ * it. The same scan is used to find classes that reference replaced classes.
+ *
+ * @author Volker Berlin
+ */
+class ImportPrefilter {
+
+    /** the descriptor of the Import annotation */
+    private static final byte[] DESCRIPTOR = Type.getDescriptor( Import.class ).getBytes( StandardCharsets.UTF_8 );
+
+    /**
+     * Scan the constant pool of a class file for the descriptor of the Import annotation.
+     *
+     * @param bytes
+     *            the class file
+     * @return false, if the class can not have an Import annotation. True, if the class has the descriptor or if the
+     *         class file format is unknown
+     */
+    static boolean mayHaveImport( byte[] bytes ) {
+        return scanUtf8( bytes, ( b, offset, size ) -> size == DESCRIPTOR.length && equals( b, offset ) );
+    }
+
+    /**
+     * Scan the UTF8 entries of the constant pool of a class file.
+     *
+     * @param bytes
+     *            the class file
+     * @param filter
+     *            the filter for the UTF8 entries
+     * @return true, if any UTF8 entry match or if the class file format is unknown
+     */
+    static boolean scanUtf8( byte[] bytes, Utf8Filter filter ) {
+        int length = bytes.length;
+        if( length < 10 ) {
+            return true;
+        }
+        int count = readUnsignedShort( bytes, 8 );
+        int offset = 10;
+        for( int i = 1; i < count; i++ ) {
+            if( offset >= length ) {
+                return true;
+            }
+            switch( bytes[offset] ) {
+                case 1: // Utf8
+                    int size = readUnsignedShort( bytes, offset + 1 );
+                    if( offset + 3 + size <= length && filter.matches( bytes, offset + 3, size ) ) {
+                        return true;
+                    }
+                    offset += 3 + size;
+                    break;
+                case 7: // Class
+                case 8: // String
+                case 16: // MethodType
+                case 19: // Module
+                case 20: // Package
+                    offset += 3;
+                    break;
+                case 15: // MethodHandle
+                    offset += 4;
+                    break;
+                case 3: // Integer
+                case 4: // Float
+                case 9: // Fieldref
+                case 10: // Methodref
+                case 11: // InterfaceMethodref
+                case 12: // NameAndType
+                case 17: // Dynamic
+                case 18: // InvokeDynamic
+                    offset += 5;
+                    break;
+                case 5: // Long
+                case 6: // Double
+                    offset += 9;
+                    i++; // use two entries
+                    break;
+                default:
+                    // unknown class file format, let ASM decide
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compare the bytes at the offset with the descriptor.
+     *
+     * @param bytes
+     *            the class file
+     * @param offset
+     *            the offset of the UTF8 bytes
+     * @return true, if equals
+     */
+    private static boolean equals( byte[] bytes, int offset ) {
+        for( int i = 0; i < DESCRIPTOR.length; i++ ) {
+            if( bytes[offset + i] != DESCRIPTOR[i] ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Read an unsigned short in big endian.
+     *
+     * @param bytes
+     *            the class file
+     * @param offset
+     *            the offset
+     * @return the value
+     */
+    private static int readUnsignedShort( byte[] bytes, int offset ) {
+        return ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+    }
+
+    /**
+     * A filter for the UTF8 entries of a constant pool.
+     */
+    @FunctionalInterface
+    static interface Utf8Filter {
+
+        /**
+         * If the UTF8 entry match.
+         *
+         * @param bytes
+         *            the class file
+         * @param offset
+         *            the offset of the UTF8 bytes
+         * @param size
+         *            the count of UTF8 bytes
+         * @return true, if match
+         */
+        boolean matches( byte[] bytes, int offset, int size );
+    }
+}
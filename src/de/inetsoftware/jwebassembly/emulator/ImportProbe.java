@@ -0,0 +1,116 @@
+/*
+ * Copyright 2021 Volker Berlin (i-net software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.inetsoftware.jwebassembly.emulator;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.ConstantCallSite;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The timing probes that the javaagent option "probes" adds to the patched native methods with Import annotation. The
+ * probes measure the end-to-end time of the patched method with all conversions and record it in the
+ * {@link ImportMetrics} of the method. With a sample rate greater than 1 only a random sample of the calls is measured
+ * so that the overhead is bounded under load. The not sampled calls cost only a thread local random number.
+ *
+ * @author Volker Berlin
+ */
+public class ImportProbe {
+
+    /** the start value of a call that is not sampled */
+    private static final long         NOT_SAMPLED = Long.MIN_VALUE;
+
+    private static final MethodHandle END;
+
+    static {
+        try {
+            END = MethodHandles.lookup().findStatic( ImportProbe.class, "end", MethodType.methodType( void.class, ImportMetrics.class, long.class ) );
+        } catch( ReflectiveOperationException ex ) {
+            throw new ExceptionInInitializerError( ex );
+        }
+    }
+
+    /**
+     * No instances.
+     */
+    private ImportProbe() {
+    }
+
+    /**
+     * The bootstrap method of the invokedynamic instruction at the end of a patched method. The call site is bound to
+     * the metrics of the method, so that the metrics are resolved only once per call site.
+     *
+     * @param lookup
+     *            the lookup of the patched class
+     * @param callName
+     *            the name of the invokedynamic instruction, not used
+     * @param type
+     *            the type of the call, (J)V
+     * @param method
+     *            the name and signature of the patched method
+     * @return the call site
+     */
+    public static CallSite bootstrap( MethodHandles.Lookup lookup, String callName, MethodType type, String method ) {
+        ImportMetrics metrics = ImportMetrics.probe( lookup.lookupClass().getName(), method );
+        return new ConstantCallSite( END.bindTo( metrics ).asType( type ) );
+    }
+
+    /**
+     * Start a probe at the begin of a patched method.
+     *
+     * @param sampleRate
+     *            measure one of n calls
+     * @return the start time or a marker if the call is not sampled
+     */
+    public static long start( int sampleRate ) {
+        if( sampleRate > 1 && ThreadLocalRandom.current().nextInt( sampleRate ) != 0 ) {
+            return NOT_SAMPLED;
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * End a probe of a patched method in a class without invokedynamic.
+     *
+     * @param start
+     *            the value of {@link #start(int)}
+     * @param className
+     *            the name of the patched class
+     * @param method
+     *            the name and signature of the patched method
+     */
+    public static void end( long start, String className, String method ) {
+        if( start != NOT_SAMPLED ) {
+            end( ImportMetrics.probe( className, method ), start );
+        }
+    }
+
+    /**
+     * End a probe of a patched method. This is the target of the call site.
+     *
+     * @param metrics
+     *            the metrics of the method
+     * @param start
+     *            the value of {@link #start(int)}
+     */
+    private static void end( ImportMetrics metrics, long start ) {
+        if( start != NOT_SAMPLED ) {
+            metrics.record( System.nanoTime() - start );
+        }
+    }
+}
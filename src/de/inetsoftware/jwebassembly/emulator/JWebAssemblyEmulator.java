@@ -16,23 +16,26 @@
 package de.inetsoftware.jwebassembly.emulator;
 
 import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.Set;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import de.inetsoftware.jwebassembly.web.DOMString;
 import javafx.application.Application;
 import javafx.application.Platform;
-import javafx.concurrent.Worker;
-import javafx.scene.Scene;
-import javafx.scene.layout.VBox;
-import javafx.scene.web.WebEngine;
-import javafx.scene.web.WebView;
 import javafx.stage.Stage;
-import netscape.javascript.JSException;
 import netscape.javascript.JSObject;
 
 /**
@@ -43,6 +46,39 @@
 @SuppressWarnings( "restriction" )
 public class JWebAssemblyEmulator {
 
+    /**
+     * System property to start the emulator without a visible window.
+     */
+    public static final String HEADLESS_PROPERTY = "jwebassembly.emulator.headless";
+
+    /**
+     * System property to reuse an already loaded page if the same page is launched again.
+     */
+    public static final String REUSE_PROPERTY    = "jwebassembly.emulator.reuse";
+
+    /**
+     * System property to enable the batching of void import calls.
+     */
+    public static final String BATCH_PROPERTY    = "jwebassembly.emulator.batch";
+
+    /**
+     * System property for the count of pages that can be loaded at the same time.
+     */
+    public static final String PAGES_PROPERTY    = "jwebassembly.emulator.pages";
+
+    private static volatile boolean headless = Boolean.getBoolean( HEADLESS_PROPERTY );
+
+    private static volatile boolean reusePage = Boolean.getBoolean( REUSE_PROPERTY );
+
+    private static volatile boolean batchVoidImports = Boolean.getBoolean( BATCH_PROPERTY );
+
+    private static volatile int     pageCount = Math.max( 1, Integer.getInteger( PAGES_PROPERTY, 1 ) );
+
+    /** signal that the JavaFX toolkit is started and the primary stage exists */
+    private static final CompletableFuture<Void> TOOLKIT = new CompletableFuture<>();
+
+    private static boolean          toolkitStarting;
+
     static {
         // move the JavaScript console to System.out
         com.sun.javafx.webkit.WebConsoleListener.setDefaultListener( ( webView, message, lineNumber, sourceId ) -> {
@@ -51,7 +87,151 @@ public class JWebAssemblyEmulator {
     }
 
     /**
-     * Start the emulator from a resource file, load the html page and call the given main method.
+     * Set the headless mode of the emulator. In the headless mode the WebEngine run without a Scene and without a
+     * visible Stage. This must be set before the first launch. The default value can be set with the system property
+     * "jwebassembly.emulator.headless".
+     * 
+     * @param headless
+     *            true, if no window should be displayed
+     */
+    public static void setHeadless( boolean headless ) {
+        if( isToolkitStarting() && JWebAssemblyEmulator.headless != headless ) {
+            throw new IllegalStateException( "The headless mode can only be changed before the first launch." );
+        }
+        JWebAssemblyEmulator.headless = headless;
+    }
+
+    /**
+     * If the emulator run in headless mode.
+     * 
+     * @return true, if no window is displayed
+     */
+    public static boolean isHeadless() {
+        return headless;
+    }
+
+    /**
+     * Set if an already loaded page should be reused. If the same URL or content is launched again then the page is not
+     * reloaded. Instead the DOM is reset with {@link #reset()} and the registered import functions stay alive. Global
+     * JavaScript variables, event listeners, timers and changes of the wasmImports of the page are not reset. The
+     * default value can be set with the system property "jwebassembly.emulator.reuse". The default is false.
+     * 
+     * @param reuse
+     *            true, if the page should be reused
+     */
+    public static void setReusePage( boolean reuse ) {
+        reusePage = reuse;
+    }
+
+    /**
+     * If an already loaded page is reused.
+     * 
+     * @return true, if the page is reused
+     */
+    public static boolean isReusePage() {
+        return reusePage;
+    }
+
+    /**
+     * Set if calls of import functions without return value are collected in a command buffer. The buffer is executed
+     * with a single crossing to JavaScript before the next import call with return value, on {@link #flush()}, at the end
+     * of the main method and at the end of the current event. Exceptions of the buffered JavaScript functions are thrown
+     * on flushing. The default value can be set with the system property "jwebassembly.emulator.batch".
+     * 
+     * @param batch
+     *            true, if void import calls should be batched
+     */
+    public static void setBatchVoidImports( boolean batch ) {
+        if( batchVoidImports != batch ) {
+            batchVoidImports = batch;
+            // the call sites must be linked again
+            ImportCallSite.invalidateAll();
+        }
+    }
+
+    /**
+     * If void import calls are batched.
+     * 
+     * @return true, if batched
+     */
+    public static boolean isBatchVoidImports() {
+        return batchVoidImports;
+    }
+
+    /**
+     * Set the count of pages that can be loaded at the same time. Every page has its own WebEngine and its own import
+     * functions. A launch use a free page and wait if all pages are busy. The main methods are executed one after the
+     * other on the JavaFX application thread, but one page can load while the main method of another page is running.
+     * The default value is 1 and can be set with the system property "jwebassembly.emulator.pages".
+     * 
+     * @param count
+     *            the count of pages, at least 1
+     */
+    public static void setPageCount( int count ) {
+        if( count < 1 ) {
+            throw new IllegalArgumentException( "The page count must be at least 1: " + count );
+        }
+        pageCount = count;
+    }
+
+    /**
+     * The count of pages that can be loaded at the same time.
+     * 
+     * @return the count of pages
+     */
+    public static int getPageCount() {
+        return pageCount;
+    }
+
+    /**
+     * Execute all batched import calls. If the caller is not the JavaFX application thread then it waits until the
+     * calls are executed.
+     */
+    public static void flush() {
+        if( Platform.isFxApplicationThread() ) {
+            ImportBatch.flush();
+            return;
+        }
+        CompletableFuture<Void> flushed = new CompletableFuture<>();
+        Platform.runLater( () -> {
+            try {
+                ImportBatch.flush();
+                flushed.complete( null );
+            } catch( Throwable th ) {
+                flushed.completeExceptionally( th );
+            }
+        } );
+        join( flushed );
+    }
+
+    /**
+     * Reset the DOM of the current page to the state after loading. This is a cheap alternative to reloading of the
+     * page. The registered import functions and global JavaScript variables are not changed. If the caller is not the
+     * JavaFX application thread then it waits until the reset is finished.
+     */
+    public static void reset() {
+        if( Platform.isFxApplicationThread() ) {
+            JavaFxApplication.resetPage();
+            return;
+        }
+        CountDownLatch resetLatch = new CountDownLatch( 1 );
+        Platform.runLater( () -> {
+            try {
+                JavaFxApplication.resetPage();
+            } finally {
+                resetLatch.countDown();
+            }
+        } );
+        try {
+            resetLatch.await();
+        } catch( InterruptedException ex ) {
+            throwAny( ex );
+        }
+    }
+
+    /**
+     * Start the emulator from a resource file, load the html page and call the given main method. This method blocks
+     * until the main method is finished.
      * 
      * @param htmlPage
      *             The resource of the html page that the WebAssembly contains.
@@ -59,13 +239,27 @@ public class JWebAssemblyEmulator {
      *            the executable with the main function
      */
     public static void launchResource( @Nonnull String htmlPage, @Nonnull Runnable main ) {
+        join( launchResourceAsync( htmlPage, main ) );
+    }
+
+    /**
+     * Start the emulator from a resource file, load the html page and call the given main method asynchronously.
+     * 
+     * @param htmlPage
+     *             The resource of the html page that the WebAssembly contains.
+     * @param main
+     *            the executable with the main function
+     * @return a future that is completed if the main method is finished
+     */
+    public static CompletableFuture<Void> launchResourceAsync( @Nonnull String htmlPage, @Nonnull Runnable main ) {
         URL resource = ClassLoader.getSystemResource( htmlPage );
         Objects.requireNonNull( resource, "Resource not found for: " + htmlPage );
-        launch( resource.toString(), null, main );
+        return launchAsync( resource.toString(), null, main, reusePage );
     }
 
     /**
-     * Start the emulator from a URL, load the html page and call the given main method.
+     * Start the emulator from a URL, load the html page and call the given main method. This method blocks until the
+     * main method is finished.
      * 
      * @param htmlPageURL
      *             The URL of the html page that the WebAssembly contains.
@@ -73,12 +267,26 @@ public static void launchResource( @Nonnull String htmlPage, @Nonnull Runnable m
      *            the executable with the main function
      */
     public static void launchURL( @Nonnull URL htmlPageURL, @Nonnull Runnable main ) {
+        join( launchURLAsync( htmlPageURL, main ) );
+    }
+
+    /**
+     * Start the emulator from a URL, load the html page and call the given main method asynchronously.
+     * 
+     * @param htmlPageURL
+     *             The URL of the html page that the WebAssembly contains.
+     * @param main
+     *            the executable with the main function
+     * @return a future that is completed if the main method is finished
+     */
+    public static CompletableFuture<Void> launchURLAsync( @Nonnull URL htmlPageURL, @Nonnull Runnable main ) {
         Objects.requireNonNull( htmlPageURL, "URL of HTML page is null." );
-        launch( htmlPageURL.toString(), null, main );
+        return launchAsync( htmlPageURL.toString(), null, main, reusePage );
     }
 
     /**
-     * Start the emulator from a URL, load the html page and call the given main method.
+     * Start the emulator from the content of a html page and call the given main method. This method blocks until the
+     * main method is finished.
      * 
      * @param content
      *             The content of the html page that the WebAssembly contains.
@@ -86,12 +294,26 @@ public static void launchURL( @Nonnull URL htmlPageURL, @Nonnull Runnable main )
      *            the executable with the main function
      */
     public static void launchContent( @Nonnull String content, @Nonnull Runnable main ) {
+        join( launchContentAsync( content, main ) );
+    }
+
+    /**
+     * Start the emulator from the content of a html page and call the given main method asynchronously.
+     * 
+     * @param content
+     *             The content of the html page that the WebAssembly contains.
+     * @param main
+     *            the executable with the main function
+     * @return a future that is completed if the main method is finished
+     */
+    public static CompletableFuture<Void> launchContentAsync( @Nonnull String content, @Nonnull Runnable main ) {
         Objects.requireNonNull( content, "Content of HTML page is null." );
-        launch( null, content, main );
+        return launchAsync( null, content, main, reusePage );
     }
 
     /**
-     * Start the emulator.
+     * Start the emulator asynchronously. The page is loaded on the JavaFX application thread while the caller can
+     * continue, for example with loading and patching of classes.
      * 
      * @param htmlPageURL
      *            The URL of the html page that the WebAssembly contains.
@@ -99,54 +321,108 @@ public static void launchContent( @Nonnull String content, @Nonnull Runnable mai
      *            The content of the html page that the WebAssembly contains.
      * @param main
      *            the executable with the main function
+     * @param reuse
+     *            true, if an already loaded page with the same URL or content should be reused
+     * @return a future that is completed if the main method is finished
      */
-    private static void launch( String htmlPageURL, String content, @Nonnull Runnable main ) {
-        JavaFxApplication.url = htmlPageURL;
-        JavaFxApplication.content = content;
-        JavaFxApplication.main = main;
-        JavaFxApplication.error = null;
-
-        if( JavaFxApplication.stage == null ) {
-            //we start a new thread because JavaFX is blocking
-            Thread thread = new Thread() {
-                public void run() {
+    static CompletableFuture<Void> launchAsync( String htmlPageURL, String content, @Nonnull Runnable main, boolean reuse ) {
+        CompletableFuture<Void> finished = new CompletableFuture<>();
+        startToolkit().whenComplete( ( result, ex ) -> {
+            if( ex != null ) {
+                finished.completeExceptionally( ex );
+                return;
+            }
+            Platform.runLater( () -> {
+                Runnable wrapper = () -> {
                     try {
-                        JavaFxApplication.launch( JavaFxApplication.class, new String[0] );
+                        main.run();
+                        ImportBatch.flush();
+                        finished.complete( null );
                     } catch( Throwable th ) {
-                        JavaFxApplication.error = th;
+                        finished.completeExceptionally( th );
                     }
-                }
-            };
-            thread.start();
-        }
-        while( JavaFxApplication.error == null && JavaFxApplication.stage == null ) {
-            try {
-                Thread.sleep( 1 );
-            } catch( InterruptedException th ) {
-                JavaFxApplication.error = th;
-            }
-        }
-        if( JavaFxApplication.error == null ) {
-            CountDownLatch launchLatch = new CountDownLatch( 1 );
-            Platform.runLater( () -> {
+                };
                 try {
-                    JavaFxApplication.execute();
+                    JavaFxApplication.execute( htmlPageURL, content, wrapper, reuse );
                 } catch( Throwable th ) {
-                    JavaFxApplication.error = th;
+                    finished.completeExceptionally( th );
                 }
-                launchLatch.countDown();
-            });
-            try {
-                launchLatch.await();
-            } catch( InterruptedException th ) {
-                JavaFxApplication.error = th;
+            } );
+        } );
+        return finished;
+    }
+
+    /**
+     * Start the JavaFX toolkit if not already started. The returning signal is completed if the toolkit is ready.
+     * 
+     * @return the signal for the toolkit readiness
+     */
+    public static CompletableFuture<Void> startToolkit() {
+        synchronized( TOOLKIT ) {
+            if( !toolkitStarting ) {
+                toolkitStarting = true;
+                if( headless ) {
+                    initHeadlessToolkit();
+                }
+                //we start a new thread because JavaFX is blocking
+                Thread thread = new Thread( () -> {
+                    try {
+                        Application.launch( JavaFxApplication.class, new String[0] );
+                    } catch( Throwable th ) {
+                        TOOLKIT.completeExceptionally( th );
+                    }
+                }, "JWebAssembly Emulator Launcher" );
+                thread.setDaemon( true );
+                thread.start();
             }
         }
-        if( JavaFxApplication.error != null ) {
-            throwAny( JavaFxApplication.error );
+        return TOOLKIT;
+    }
+
+    /**
+     * If the start of the JavaFX toolkit was already requested.
+     * 
+     * @return true, if starting or started
+     */
+    private static boolean isToolkitStarting() {
+        synchronized( TOOLKIT ) {
+            return toolkitStarting;
+        }
+    }
+
+    /**
+     * Wait until the future is completed and throw the original exception if it fails.
+     * 
+     * @param future
+     *            the future of a launch
+     */
+    private static void join( CompletableFuture<Void> future ) {
+        try {
+            future.join();
+        } catch( CompletionException ex ) {
+            throwAny( ex.getCause() );
         }
     }
 
+    /**
+     * Configure the JavaFX toolkit for a system without display. If the Monocle platform is available and the user has
+     * not set another platform then the headless Monocle platform with software rendering is used. Without a window the
+     * toolkit should not exit if the last window is closed.
+     */
+    private static void initHeadlessToolkit() {
+        if( System.getProperty( "glass.platform" ) == null ) {
+            try {
+                Class.forName( "com.sun.glass.ui.monocle.MonoclePlatformFactory" );
+                System.setProperty( "glass.platform", "Monocle" );
+                System.setProperty( "monocle.platform", "Headless" );
+                System.setProperty( "prism.order", "sw" );
+            } catch( ClassNotFoundException ex ) {
+                // Monocle is not available, use the default platform
+            }
+        }
+        Platform.setImplicitExit( false );
+    }
+
     /**
      * Hide the emulator window
      */
@@ -173,46 +449,127 @@ static <E extends Throwable> void throwAny( Throwable e ) throws E {
      */
     public static class JavaFxApplication extends Application {
 
-        private static String    url;
+        private static Stage                               stage;
+
+        /** all pages of the pool */
+        private static final List<EmulatorPage>            PAGES       = new ArrayList<>();
 
-        private static String    content;
+        /** launches that wait for a free page */
+        private static final Queue<Runnable>               WAITING     = new ArrayDeque<>();
 
-        private static Runnable  main;
+        /** the page of the running main method, the import functions are called in this page */
+        private static volatile EmulatorPage               page;
 
-        private static Stage     stage;
+        /** all registered import functions, the key is module and name */
+        private static final Map<String, ImportAnnotation> ANNOTATIONS = new ConcurrentHashMap<>();
 
-        private static WebEngine webEngine;
+        private static final Object[]                      NO_ARGS     = new Object[0];
 
-        private static JSObject  wasmImports;
+        /** the URL of the last launch */
+        private static volatile String                     url;
 
-        private static Throwable error;
+        /** the content of the last launch */
+        private static volatile String                     content;
 
-        private static final Set<ImportAnnotation> ANNOTATIONS = ConcurrentHashMap.newKeySet();
+        /** the main method of the last launch */
+        private static volatile Runnable                   main;
 
         /**
-         * register a JavaScript function from a nation method with annotation in the wasmimports
+         * Register the JavaScript functions of native methods with annotation in the wasmImports. All functions are
+         * installed with a single script execution.
          * 
-         * @param anno
-         *            the annotation
+         * @param annos
+         *            the annotations, typically all annotations of a class
          */
-        static void registerScript( @Nonnull ImportAnnotation anno ) {
-            if( wasmImports == null ) {
-                // A class with native code was loaded before launching, can occur with JUnit testing
-                JWebAssemblyEmulator.launch( url, content, () -> {} );
+        static void registerScripts( @Nonnull Collection<ImportAnnotation> annos ) {
+            if( annos.isEmpty() ) {
+                return;
+            }
+            for( ImportAnnotation anno : annos ) {
+                ANNOTATIONS.put( anno.module + '.' + anno.name, anno );
+            }
+            if( page == null ) {
+                // A class with native code was loaded before launching, can occur with JUnit testing.
+                // The functions are registered if the page is loaded. Start the toolkit in the meantime.
+                startToolkit();
+                return;
             }
-            ANNOTATIONS.add( anno );
             if( !Platform.isFxApplicationThread() ) {
                 // A class with native code was loaded outside of the event thread
-                Platform.runLater( () -> registerScript( anno ) );
+                Platform.runLater( () -> installScripts( annos ) );
                 return;
             }
+            installScripts( annos );
+        }
 
-            Object obj = wasmImports.getMember( anno.module );
-            if( "undefined".equals( obj ) ) {
-                webEngine.executeScript( "wasmImports." + anno.module + " = {}" );
+        /**
+         * Register the JavaScript function of a single import if it is not registered yet. This is used by the call
+         * sites of classes that was patched ahead of time without the javaagent.
+         * 
+         * @param module
+         *            the module name
+         * @param name
+         *            the function name
+         * @param javaScript
+         *            the JavaScript code of the function or null if the page provide it
+         */
+        static void registerScript( @Nonnull String module, @Nonnull String name, @Nullable String javaScript ) {
+            if( ANNOTATIONS.containsKey( module + '.' + name ) ) {
+                return;
+            }
+            ImportAnnotation anno = new ImportAnnotation();
+            anno.module = module;
+            anno.name = name;
+            anno.javaScript = javaScript;
+            registerScripts( Collections.singletonList( anno ) );
+        }
+
+        /**
+         * Install the JavaScript functions in all loaded pages of the pool.
+         * 
+         * @param annos
+         *            the annotations
+         */
+        private static void installScripts( @Nonnull Collection<ImportAnnotation> annos ) {
+            for( EmulatorPage emulatorPage : PAGES ) {
+                if( emulatorPage.isLoaded() ) {
+                    emulatorPage.installScripts( annos );
+                }
+            }
+        }
+
+        /**
+         * Get the JavaScript object of a module from the wasmImports of the current page.
+         * 
+         * @param moduleName
+         *            the name of the module
+         * @return the module object
+         */
+        static JSObject module( String moduleName ) {
+            return page.module( moduleName );
+        }
+
+        /**
+         * Get the module for a call via the static bridge. Batched calls are executed before.
+         * 
+         * @param moduleName
+         *            the name of the module
+         * @return the module object
+         */
+        private static JSObject bridgeModule( String moduleName ) {
+            if( ImportBatch.isPending() ) {
+                ImportBatch.flush();
             }
+            return module( moduleName );
+        }
 
-            webEngine.executeScript( "wasmImports." + anno.module + "." + anno.name + "=" + anno.javaScript );
+        /**
+         * Get the JavaScript helper object for the batching of void import calls in the current page.
+         * 
+         * @return the helper object
+         */
+        static JSObject batchHelper() {
+            return page.batchHelper();
         }
 
         /**
@@ -227,7 +584,7 @@ static void registerScript( @Nonnull ImportAnnotation anno ) {
          * @return the return value if any
          */
         public static Object executeScript( String moduleName, String methodName, Object... args ) {
-            JSObject module = (JSObject)wasmImports.getMember( moduleName );
+            JSObject module = bridgeModule( moduleName );
 
             if( args != null ) {
                 // JavaFX does not support our marker interface DOMString that 
@@ -240,59 +597,309 @@ public static Object executeScript( String moduleName, String methodName, Object
             return module.call( methodName, args );
         }
 
+        /**
+         * The bridge method for an import function without parameters.
+         * 
+         * @param moduleName
+         *            the name of the module
+         * @param methodName
+         *            the name of the function
+         * @return the return value if any
+         */
+        public static Object executeScript( String moduleName, String methodName ) {
+            JSObject module = bridgeModule( moduleName );
+            return module.call( methodName, NO_ARGS );
+        }
+
+        /**
+         * The bridge method for an import function with one parameter.
+         * 
+         * @param moduleName
+         *            the name of the module
+         * @param methodName
+         *            the name of the function
+         * @param arg1
+         *            the first argument
+         * @return the return value if any
+         */
+        public static Object executeScript( String moduleName, String methodName, Object arg1 ) {
+            JSObject module = bridgeModule( moduleName );
+            return module.call( methodName, toJS( arg1 ) );
+        }
+
+        /**
+         * The bridge method for an import function with two parameters.
+         * 
+         * @param moduleName
+         *            the name of the module
+         * @param methodName
+         *            the name of the function
+         * @param arg1
+         *            the first argument
+         * @param arg2
+         *            the second argument
+         * @return the return value if any
+         */
+        public static Object executeScript( String moduleName, String methodName, Object arg1, Object arg2 ) {
+            JSObject module = bridgeModule( moduleName );
+            return module.call( methodName, toJS( arg1 ), toJS( arg2 ) );
+        }
+
+        /**
+         * The bridge method for an import function with three parameters.
+         * 
+         * @param moduleName
+         *            the name of the module
+         * @param methodName
+         *            the name of the function
+         * @param arg1
+         *            the first argument
+         * @param arg2
+         *            the second argument
+         * @param arg3
+         *            the third argument
+         * @return the return value if any
+         */
+        public static Object executeScript( String moduleName, String methodName, Object arg1, Object arg2, Object arg3 ) {
+            JSObject module = bridgeModule( moduleName );
+            return module.call( methodName, toJS( arg1 ), toJS( arg2 ), toJS( arg3 ) );
+        }
+
+        /**
+         * Convert a Java argument to a value that JavaFX can pass to JavaScript.
+         * 
+         * @param arg
+         *            the argument
+         * @return the JavaScript compatible value
+         */
+        private static Object toJS( Object arg ) {
+            // JavaFX does not support our marker interface DOMString
+            return arg instanceof DOMString ? arg.toString() : arg;
+        }
+
+        /**
+         * Convert a JavaScript return value to a wasm i32 value.
+         * 
+         * @param value
+         *            the JavaScript value
+         * @return the value
+         */
+        public static int toInt( Object value ) {
+            if( value instanceof Number ) {
+                return ((Number)value).intValue();
+            }
+            if( value instanceof Boolean ) {
+                return ((Boolean)value) ? 1 : 0;
+            }
+            return 0; // null or undefined
+        }
+
+        /**
+         * Convert a JavaScript return value to a boolean like a wasm i32 value.
+         * 
+         * @param value
+         *            the JavaScript value
+         * @return the value
+         */
+        public static boolean toBoolean( Object value ) {
+            return toInt( value ) != 0;
+        }
+
+        /**
+         * Convert a JavaScript return value to a wasm i64 value.
+         * 
+         * @param value
+         *            the JavaScript value
+         * @return the value
+         */
+        public static long toLong( Object value ) {
+            return value instanceof Number ? ((Number)value).longValue() : toInt( value );
+        }
+
+        /**
+         * Convert a JavaScript return value to a wasm f32 value.
+         * 
+         * @param value
+         *            the JavaScript value
+         * @return the value
+         */
+        public static float toFloat( Object value ) {
+            return value instanceof Number ? ((Number)value).floatValue() : toInt( value );
+        }
+
+        /**
+         * Convert a JavaScript return value to a wasm f64 value.
+         * 
+         * @param value
+         *            the JavaScript value
+         * @return the value
+         */
+        public static double toDouble( Object value ) {
+            return value instanceof Number ? ((Number)value).doubleValue() : toInt( value );
+        }
+
+        /**
+         * Convert a JavaScript return value to a DOMString.
+         * 
+         * @param value
+         *            the JavaScript value
+         * @return the value
+         */
+        public static DOMString toDOMString( Object value ) {
+            return value == null || value instanceof DOMString ? (DOMString)value : de.inetsoftware.jwebassembly.web.JSObject.domString( value.toString() );
+        }
+
         /**
          * {@inheritDoc}
          */
         @Override
         public void start( Stage primaryStage ) throws Exception {
             stage = primaryStage;
+            TOOLKIT.complete( null );
         }
 
         /**
-         * Load the page and run the start method
+         * Load the page of the last launch again and run its main method. Must be called on the JavaFX application
+         * thread.
+         *
+         * @deprecated use {@link JWebAssemblyEmulator#launchURL(URL, Runnable)} or
+         *             {@link JWebAssemblyEmulator#launchContent(String, Runnable)}
          */
+        @Deprecated
         public static void execute() {
-            // Create a WebView
-            WebView browser = new WebView();
-
-            // Get WebEngine via WebView
-            webEngine = browser.getEngine();
-            // https://stackoverflow.com/questions/41654573/java-fx-javascript
-            Worker<Void> worker = webEngine.getLoadWorker();
-            worker.stateProperty().addListener( ( obs, old, neww ) -> {
-                if( neww == Worker.State.SUCCEEDED ) {
-                    try {
-                        wasmImports = (JSObject)webEngine.executeScript( "wasmImports" );
-                    } catch( JSException e ) {
-                        webEngine.executeScript( "var wasmImports = {}" );
-                        wasmImports = (JSObject)webEngine.executeScript( "wasmImports" );
-                    }
-                    // recreate the annotation in a new page
-                    for( ImportAnnotation anno : ANNOTATIONS ) {
-                        registerScript( anno );
+            Runnable main = JavaFxApplication.main;
+            if( main == null ) {
+                throw new IllegalStateException( "The emulator was never launched" );
+            }
+            execute( url, content, main, reusePage );
+        }
+
+        /**
+         * Load the page in a free page of the pool and run the main method. If all pages are busy then the launch wait
+         * until a page is released.
+         * 
+         * @param url
+         *            The URL of the html page that the WebAssembly contains.
+         * @param content
+         *            The content of the html page that the WebAssembly contains.
+         * @param main
+         *            the main method, must not throw any exception
+         * @param reuse
+         *            true, if an already loaded page with the same URL or content should be reused
+         */
+        static void execute( String url, String content, @Nonnull Runnable main, boolean reuse ) {
+            JavaFxApplication.url = url;
+            JavaFxApplication.content = content;
+            JavaFxApplication.main = main;
+            EmulatorPage emulatorPage = acquirePage( url, content, reuse );
+            if( emulatorPage == null ) {
+                WAITING.add( () -> execute( url, content, main, reuse ) );
+                return;
+            }
+            Runnable run = () -> {
+                try {
+                    activate( emulatorPage );
+                    main.run();
+                } finally {
+                    releasePage( emulatorPage );
+                }
+            };
+
+            if( reuse && emulatorPage.isLoaded( url, content ) ) {
+                // the same page is already loaded, there is no need to load it again
+                emulatorPage.reset();
+                Platform.runLater( run );
+                return;
+            }
+            emulatorPage.load( url, content, ANNOTATIONS.values(), () -> {
+                if( page == emulatorPage ) {
+                    // the call sites and batched calls are bound to the old document of the page
+                    page = null;
+                }
+                run.run();
+            } );
+        }
+
+        /**
+         * Find a free page of the pool. If there is no free page and the pool is not full then a new page is created.
+         * 
+         * @param url
+         *            The URL of the html page
+         * @param content
+         *            The content of the html page
+         * @param reuse
+         *            true, if a page with the same URL or content is preferred
+         * @return the page or null if all pages are busy
+         */
+        private static EmulatorPage acquirePage( String url, String content, boolean reuse ) {
+            EmulatorPage free = null;
+            for( EmulatorPage emulatorPage : PAGES ) {
+                if( !emulatorPage.busy ) {
+                    if( !reuse || emulatorPage.isLoaded( url, content ) ) {
+                        free = emulatorPage;
+                        break;
                     }
-                    try {
-                        main.run();
-                    } catch( Throwable th ) {
-                        error = th;
+                    if( free == null ) {
+                        free = emulatorPage;
                     }
-                    //primaryStage.close();
                 }
-            } );
-            // Load page
-            if( content != null ) {
-                webEngine.loadContent( content );
-            } else {
-                webEngine.load( url );
             }
+            if( free == null && PAGES.size() < pageCount ) {
+                free = new EmulatorPage( headless );
+                PAGES.add( free );
+            }
+            if( free != null ) {
+                free.busy = true;
+            }
+            return free;
+        }
 
-            VBox vBox = new VBox( browser );
-            Scene scene = new Scene( vBox );
+        /**
+         * Release a page after the main method is finished and start the next waiting launch.
+         * 
+         * @param emulatorPage
+         *            the page
+         */
+        private static void releasePage( EmulatorPage emulatorPage ) {
+            emulatorPage.busy = false;
+            Runnable next = WAITING.poll();
+            if( next != null ) {
+                next.run();
+            }
+        }
 
-            stage.setTitle( "JWebAssembly Emulator" );
-            stage.setScene( scene );
-            stage.show();
+        /**
+         * Set the page in which the import functions are called. If the page changes then batched calls are executed
+         * and the call sites are bound again on the next call.
+         * 
+         * @param emulatorPage
+         *            the page
+         */
+        private static void activate( EmulatorPage emulatorPage ) {
+            if( page != emulatorPage ) {
+                if( page != null && ImportBatch.isPending() ) {
+                    ImportBatch.flush();
+                }
+                page = emulatorPage;
+                ImportBatch.clear();
+                ImportCallSite.invalidateAll();
+            }
+            if( !headless ) {
+                stage.setTitle( "JWebAssembly Emulator" );
+                if( stage.getScene() != emulatorPage.scene() ) {
+                    stage.setScene( emulatorPage.scene() );
+                }
+                stage.show();
+            }
         }
 
+        /**
+         * Restore the DOM of the current page from the snapshot that was taken after loading.
+         */
+        static void resetPage() {
+            if( page != null ) {
+                page.reset();
+            }
+        }
     }
 }
@@ -17,6 +17,7 @@
 
 import static org.objectweb.asm.Opcodes.ACC_NATIVE;
 import static org.objectweb.asm.Opcodes.ASM7;
+import static org.objectweb.asm.Opcodes.V1_7;
 
 import java.util.Map;
 
@@ -33,6 +34,12 @@ class PatchImportClassVisitor extends ClassVisitor {
 
     private Map<String, ImportAnnotation> annotations;
 
+    private final EmulatorOptions         options;
+
+    private String                        className;
+
+    private boolean                       invokeDynamic;
+
     /**
      * Create a new instance.
      * 
@@ -40,10 +47,24 @@ class PatchImportClassVisitor extends ClassVisitor {
      *            the class writer
      * @param annotations
      *            methods to patch, key is method name with signature
+     * @param options
+     *            the options of the javaagent
      */
-    PatchImportClassVisitor( ClassWriter cw, Map<String, ImportAnnotation> annotations ) {
+    PatchImportClassVisitor( ClassWriter cw, Map<String, ImportAnnotation> annotations, EmulatorOptions options ) {
         super( ASM7, cw );
         this.annotations = annotations;
+        this.options = options;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void visit( int version, int access, String name, String signature, String superName, String[] interfaces ) {
+        // invokedynamic requires a class file of Java 7 or higher
+        invokeDynamic = (version & 0xFFFF) >= V1_7;
+        className = name;
+        super.visit( version, access, name, signature, superName, interfaces );
     }
 
     /**
@@ -56,7 +77,7 @@ public MethodVisitor visitMethod( int access, String name, String desc, String s
 
         if( anno != null ) {
             mv = super.visitMethod( access & ~ACC_NATIVE, name, desc, signature, exceptions );
-            mv = new PatchImportMethodVisitor( mv, desc, anno );
+            mv = new PatchImportMethodVisitor( mv, className, access, name, desc, anno, invokeDynamic, options.metrics, options.probes );
         } else {
             // use the original method without changes
             mv = super.visitMethod( access, name, desc, signature, exceptions );
@@ -16,23 +16,36 @@
 package de.inetsoftware.jwebassembly.emulator;
 
 import static org.objectweb.asm.Opcodes.AASTORE;
-import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.ACC_STATIC;
 import static org.objectweb.asm.Opcodes.ANEWARRAY;
 import static org.objectweb.asm.Opcodes.ARETURN;
 import static org.objectweb.asm.Opcodes.BIPUSH;
-import static org.objectweb.asm.Opcodes.DRETURN;
+import static org.objectweb.asm.Opcodes.CHECKCAST;
 import static org.objectweb.asm.Opcodes.DUP;
-import static org.objectweb.asm.Opcodes.FRETURN;
+import static org.objectweb.asm.Opcodes.H_INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.I2B;
+import static org.objectweb.asm.Opcodes.I2C;
+import static org.objectweb.asm.Opcodes.I2S;
+import static org.objectweb.asm.Opcodes.ILOAD;
 import static org.objectweb.asm.Opcodes.INVOKESTATIC;
 import static org.objectweb.asm.Opcodes.IRETURN;
-import static org.objectweb.asm.Opcodes.LRETURN;
+import static org.objectweb.asm.Opcodes.LLOAD;
+import static org.objectweb.asm.Opcodes.LSTORE;
 import static org.objectweb.asm.Opcodes.POP;
 import static org.objectweb.asm.Opcodes.RETURN;
 
+import java.lang.invoke.CallSite;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+
+import org.objectweb.asm.Handle;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 
+import de.inetsoftware.jwebassembly.web.DOMString;
+
 /**
  * Create the new proxy code for a native method with Import annotation.
  * 
@@ -40,31 +53,83 @@
  */
 class PatchImportMethodVisitor extends MethodVisitor {
 
-    private static final String RUNNER_CLASS = Type.getInternalName( JWebAssemblyEmulator.JavaFxApplication.class );
+    private static final String RUNNER_CLASS      = Type.getInternalName( JWebAssemblyEmulator.JavaFxApplication.class );
+
+    private static final String RUNNER_FUNC       = "executeScript";
+
+    /** the count of parameters up to which a bridge method without varargs array exists */
+    private static final int    MAX_FIXED_ARITY   = 3;
+
+    private static final Type   OBJECT_TYPE       = Type.getType( Object.class );
+
+    private static final Type   DOMSTRING_TYPE    = Type.getType( DOMString.class );
+
+    private static final String BOOTSTRAP_DESC    = Type.getMethodDescriptor( Type.getType( CallSite.class ), Type.getType( MethodHandles.Lookup.class ), Type.getType( String.class ), //
+                    Type.getType( MethodType.class ), Type.getType( String.class ), Type.getType( String.class ), Type.getType( String.class ) );
+
+    private static final Handle BOOTSTRAP         = new Handle( H_INVOKESTATIC, Type.getInternalName( ImportCallSite.class ), "bootstrap", BOOTSTRAP_DESC, false );
+
+    /** the bootstrap method of call sites that record metrics */
+    private static final Handle BOOTSTRAP_METRICS = new Handle( H_INVOKESTATIC, Type.getInternalName( ImportCallSite.class ), "bootstrapWithMetrics", BOOTSTRAP_DESC, false );
+
+    /** the bootstrap method of the call site at the end of a probe */
+    private static final Handle PROBE_BOOTSTRAP   = new Handle( H_INVOKESTATIC, Type.getInternalName( ImportProbe.class ), "bootstrap", //
+                    Type.getMethodDescriptor( Type.getType( CallSite.class ), Type.getType( MethodHandles.Lookup.class ), Type.getType( String.class ), Type.getType( MethodType.class ), Type.getType( String.class ) ), false );
+
+    private static final String PROBE_CLASS       = Type.getInternalName( ImportProbe.class );
 
-    private static final String RUNNER_FUNC  = "executeScript";
+    private final String        className;
 
-    private static final String RUNNER_DESC  =
-                    Type.getMethodDescriptor( Type.getType( Object.class ), Type.getType( String.class ), Type.getType( String.class ), Type.getType( Object[].class ) );
+    private final int           access;
+
+    private final String        name;
 
     private final String        desc;
 
     private ImportAnnotation    anno;
 
+    private final boolean       invokeDynamic;
+
+    private final boolean       metrics;
+
+    /** measure one of n calls, 0 if the method has no probe */
+    private final int           probes;
+
+    /** the local variable with the start time of the probe */
+    private int                 probeSlot;
+
     /**
      * Create an instance.
      * 
      * @param mw
      *            the method visitor of the ClassWriter
+     * @param className
+     *            the internal name of the class
+     * @param access
+     *            the access flags of the method
+     * @param name
+     *            the name of the method
      * @param desc
      *            the signature of the method (parameters and return)
      * @param anno
      *            the values of the Import annotation
+     * @param invokeDynamic
+     *            true, if the class file version supports invokedynamic
+     * @param metrics
+     *            true, if the call site should record metrics
+     * @param probes
+     *            the sample rate of the timing probe, 0 for no probe
      */
-    PatchImportMethodVisitor( MethodVisitor mw, String desc, ImportAnnotation anno ) {
+    PatchImportMethodVisitor( MethodVisitor mw, String className, int access, String name, String desc, ImportAnnotation anno, boolean invokeDynamic, boolean metrics, int probes ) {
         super( Opcodes.ASM7, mw );
+        this.className = className;
+        this.access = access;
+        this.name = name;
         this.desc = desc;
         this.anno = anno;
+        this.invokeDynamic = invokeDynamic;
+        this.metrics = metrics;
+        this.probes = probes;
     }
 
     /**
@@ -72,63 +137,220 @@ class PatchImportMethodVisitor extends MethodVisitor {
      */
     @Override
     public void visitEnd() {
-        JWebAssemblyEmulator.JavaFxApplication.registerScript( anno );
+        startProbe();
+        if( invokeDynamic ) {
+            callSite();
+        } else {
+            callBridge();
+        }
+
+        // finish
+        visitMaxs( 0, 0 );
+        super.visitEnd();
+    }
+
+    /**
+     * Create the code that call the import function via an invokedynamic call site that bind the JavaScript function
+     * on the first call. With metrics the call site records the calls of the import function.
+     */
+    private void callSite() {
+        Type methodType = Type.getType( desc );
+        int slot = (access & ACC_STATIC) != 0 ? 0 : 1;
+        for( Type arg : methodType.getArgumentTypes() ) {
+            visitVarInsn( arg.getOpcode( ILOAD ), slot );
+            slot += arg.getSize();
+        }
+        // the JavaScript is passed for classes that are patched ahead of time and never seen by the javaagent
+        String javaScript = anno.javaScript == null ? "" : anno.javaScript;
+        visitInvokeDynamicInsn( "call", desc, metrics ? BOOTSTRAP_METRICS : BOOTSTRAP, anno.module, anno.name, javaScript );
+        endProbe();
+        visitInsn( methodType.getReturnType().getOpcode( IRETURN ) );
+    }
+
+    /**
+     * Create the code that call the import function via the static bridge methods. This is used for old class files
+     * without support for invokedynamic.
+     */
+    private void callBridge() {
         visitLdcInsn( anno.module );
         visitLdcInsn( anno.name );
 
         Type methodType = Type.getType( desc );
         Type[] args = methodType.getArgumentTypes();
+        int slot = (access & ACC_STATIC) != 0 ? 0 : 1;
+
+        if( args.length <= MAX_FIXED_ARITY ) {
+            // the parameters are passed directly to a bridge method with the same count of parameters
+            for( Type arg : args ) {
+                slot = loadArgument( arg, slot );
+            }
+        } else {
+            // allocate an array for the method parameters
+            visitIntInsn( BIPUSH, args.length ); // count of arguments
+            visitTypeInsn( ANEWARRAY, OBJECT_TYPE.getInternalName() );
 
-        // allocate an array for the method parameters 
-        visitIntInsn( BIPUSH, args.length ); // count of arguments
-        visitTypeInsn( ANEWARRAY, Type.getInternalName( Object.class ) );
-
-        // assign the method parameters to the array
-        for( int i = 0; i < args.length; i++ ) {
-            visitInsn( DUP ); // duplicate the reference to the array on the stack
-            visitIntInsn( BIPUSH, i ); // array index
-            Type arg = args[i];
-            int opcode;
-            switch( arg.getSort() ) {
-                //TODO other types
-                default:
-                    opcode = ALOAD;
+            // assign the method parameters to the array
+            for( int i = 0; i < args.length; i++ ) {
+                visitInsn( DUP ); // duplicate the reference to the array on the stack
+                visitIntInsn( BIPUSH, i ); // array index
+                slot = loadArgument( args[i], slot );
+                visitInsn( AASTORE );
             }
-            visitVarInsn( opcode, i );
-            visitInsn( AASTORE );
         }
 
         // call the script
-        visitMethodInsn( INVOKESTATIC, RUNNER_CLASS, RUNNER_FUNC, RUNNER_DESC, false );
+        Type[] runnerArgs;
+        if( args.length <= MAX_FIXED_ARITY ) {
+            runnerArgs = new Type[2 + args.length];
+            Arrays.fill( runnerArgs, OBJECT_TYPE );
+        } else {
+            runnerArgs = new Type[] { null, null, Type.getType( Object[].class ) };
+        }
+        runnerArgs[0] = runnerArgs[1] = Type.getType( String.class );
+        visitMethodInsn( INVOKESTATIC, RUNNER_CLASS, RUNNER_FUNC, Type.getMethodDescriptor( OBJECT_TYPE, runnerArgs ), false );
+        endProbe();
 
         // return the value
-        switch( methodType.getReturnType().getSort() ) {
+        Type returnType = methodType.getReturnType();
+        switch( returnType.getSort() ) {
             case Type.VOID:
                 visitInsn( POP );
                 visitInsn( RETURN );
                 break;
-            case Type.INT:
-            case Type.SHORT:
+            case Type.BOOLEAN:
+                convertReturn( "toBoolean", Type.BOOLEAN_TYPE );
+                visitInsn( IRETURN );
+                break;
             case Type.BYTE:
+                convertReturn( "toInt", Type.INT_TYPE );
+                visitInsn( I2B );
+                visitInsn( IRETURN );
+                break;
+            case Type.SHORT:
+                convertReturn( "toInt", Type.INT_TYPE );
+                visitInsn( I2S );
+                visitInsn( IRETURN );
+                break;
             case Type.CHAR:
+                convertReturn( "toInt", Type.INT_TYPE );
+                visitInsn( I2C );
+                visitInsn( IRETURN );
+                break;
+            case Type.INT:
+                convertReturn( "toInt", Type.INT_TYPE );
                 visitInsn( IRETURN );
                 break;
             case Type.LONG:
-                visitInsn( LRETURN );
+                convertReturn( "toLong", Type.LONG_TYPE );
+                visitInsn( returnType.getOpcode( IRETURN ) );
                 break;
             case Type.FLOAT:
-                visitInsn( FRETURN );
+                convertReturn( "toFloat", Type.FLOAT_TYPE );
+                visitInsn( returnType.getOpcode( IRETURN ) );
                 break;
             case Type.DOUBLE:
-                visitInsn( DRETURN );
+                convertReturn( "toDouble", Type.DOUBLE_TYPE );
+                visitInsn( returnType.getOpcode( IRETURN ) );
                 break;
             default:
+                if( DOMSTRING_TYPE.equals( returnType ) ) {
+                    // JavaScript return a string that must be wrapped
+                    convertReturn( "toDOMString", DOMSTRING_TYPE );
+                } else if( !OBJECT_TYPE.equals( returnType ) ) {
+                    visitTypeInsn( CHECKCAST, returnType.getInternalName() );
+                }
                 visitInsn( ARETURN );
         }
+    }
 
-        // finish
-        visitMaxs( 0, 0 );
-        super.visitEnd();
+    /**
+     * Create the code that save the start time of the probe in a local variable after the parameters. The probe code
+     * has no branches because the patched methods have no stack map frames.
+     */
+    private void startProbe() {
+        if( probes == 0 ) {
+            return;
+        }
+        probeSlot = (Type.getArgumentsAndReturnSizes( desc ) >> 2) - ((access & ACC_STATIC) != 0 ? 1 : 0);
+        visitLdcInsn( probes );
+        visitMethodInsn( INVOKESTATIC, PROBE_CLASS, "start", "(I)J", false );
+        visitVarInsn( LSTORE, probeSlot );
+    }
+
+    /**
+     * Create the code that record the time of the probe. The return value of the import function stays on the stack.
+     * Calls that throw an exception are not measured.
+     */
+    private void endProbe() {
+        if( probes == 0 ) {
+            return;
+        }
+        visitVarInsn( LLOAD, probeSlot );
+        if( invokeDynamic ) {
+            visitInvokeDynamicInsn( "end", "(J)V", PROBE_BOOTSTRAP, name + desc );
+        } else {
+            visitLdcInsn( Type.getObjectType( className ).getClassName() );
+            visitLdcInsn( name + desc );
+            visitMethodInsn( INVOKESTATIC, PROBE_CLASS, "end", "(JLjava/lang/String;Ljava/lang/String;)V", false );
+        }
     }
 
+    /**
+     * Load a method parameter on the stack and box it if it is a primitive type. All types that are an i32 in
+     * WebAssembly are passed as Integer.
+     * 
+     * @param arg
+     *            the type of the parameter
+     * @param slot
+     *            the slot of the parameter in the local variables
+     * @return the slot of the next parameter
+     */
+    private int loadArgument( Type arg, int slot ) {
+        visitVarInsn( arg.getOpcode( ILOAD ), slot );
+        switch( arg.getSort() ) {
+            case Type.BOOLEAN:
+            case Type.BYTE:
+            case Type.CHAR:
+            case Type.SHORT:
+            case Type.INT:
+                box( Integer.class, Type.INT_TYPE );
+                break;
+            case Type.LONG:
+                box( Long.class, Type.LONG_TYPE );
+                break;
+            case Type.FLOAT:
+                box( Float.class, Type.FLOAT_TYPE );
+                break;
+            case Type.DOUBLE:
+                box( Double.class, Type.DOUBLE_TYPE );
+                break;
+            default:
+        }
+        return slot + arg.getSize();
+    }
+
+    /**
+     * Box the primitive value on the stack with the valueOf method of the wrapper class.
+     * 
+     * @param wrapper
+     *            the wrapper class
+     * @param primitive
+     *            the primitive type on the stack
+     */
+    private void box( Class<?> wrapper, Type primitive ) {
+        Type type = Type.getType( wrapper );
+        visitMethodInsn( INVOKESTATIC, type.getInternalName(), "valueOf", Type.getMethodDescriptor( type, primitive ), false );
+    }
+
+    /**
+     * Convert the JavaScript return value on the stack with a helper method of the bridge.
+     * 
+     * @param name
+     *            the name of the helper method
+     * @param type
+     *            the return type of the helper method
+     */
+    private void convertReturn( String name, Type type ) {
+        visitMethodInsn( INVOKESTATIC, RUNNER_CLASS, name, Type.getMethodDescriptor( type, OBJECT_TYPE ), false );
+    }
 }
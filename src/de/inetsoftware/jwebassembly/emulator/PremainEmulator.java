@@ -19,15 +19,13 @@
 import java.lang.instrument.IllegalClassFormatException;
 import java.lang.instrument.Instrumentation;
 import java.security.ProtectionDomain;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import javax.annotation.Nullable;
 
-import org.objectweb.asm.ClassReader;
-import org.objectweb.asm.ClassVisitor;
-import org.objectweb.asm.ClassWriter;
-
 /**
  * Start class of the emulator's javaagent.
  * 
@@ -43,33 +41,98 @@ public class PremainEmulator {
      * @param inst
      *            services to instrument Javaprogramming language code.
      */
-    public static void premain( @SuppressWarnings( "unused" ) @Nullable String agentArgs, Instrumentation inst ) {
+    public static void premain( @Nullable String agentArgs, Instrumentation inst ) {
+        EmulatorOptions options = EmulatorOptions.parse( agentArgs );
+        if( options.metrics || options.probes > 0 ) {
+            AgentMetrics.register();
+            ImportMetrics.reportOnExit( options.metricsReport );
+        }
+        TransformCache cache = TransformCache.create( options );
+        ReplaceIndex replacements = options.replaces.isEmpty() ? null : ReplaceIndex.scan();
+        AgentMetrics metrics = AgentMetrics.INSTANCE;
+        if( replacements != null ) {
+            metrics.replacements = replacements.toString();
+        }
         inst.addTransformer( new ClassFileTransformer() {
             @Override
             public byte[] transform( ClassLoader loader, String className, Class<?> classBeingRedefined, ProtectionDomain protectionDomain, byte[] classfileBuffer ) throws IllegalClassFormatException {
+                long start = System.nanoTime();
+                metrics.scanned.increment();
                 try {
-                    ClassReader cr = new ClassReader( classfileBuffer );
-    
-                    // container for find Import annotations
-                    Map<String, ImportAnnotation> annotations = new HashMap<>();
-                    ImportAnnotationClassVisitor visitor = new ImportAnnotationClassVisitor( className, annotations );
-                    cr.accept( visitor, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES );
-    
-                    // if there Import annotations then patch the code
-                    if( !annotations.isEmpty() ) {
-                        ClassWriter cw = new ClassWriter( cr, ClassWriter.COMPUTE_FRAMES );
-                        ClassVisitor cv = new PatchImportClassVisitor( cw, annotations );
-                        cr.accept( cv, 0 );
-                        return cw.toByteArray();
-                    } else {
-                        // all other classes return as original
-                        return classfileBuffer;
+                    // hidden classes have no name and are never patched
+                    if( className == null ) {
+                        metrics.skipped.increment();
+                        return null;
+                    }
+                    byte[] replaced = null;
+                    if( replacements != null && !ReplaceIndex.isRuntimeClass( className ) ) {
+                        replaced = replacements.patch( className, classfileBuffer, options.acceptReplace( className ) );
+                        if( replaced != null ) {
+                            metrics.replaced.increment();
+                            classfileBuffer = replaced;
+                        }
+                    }
+                    if( !options.accept( className ) || !ImportPrefilter.mayHaveImport( classfileBuffer ) ) {
+                        if( replaced == null ) {
+                            metrics.skipped.increment();
+                        }
+                        return replaced;
                     }
+                    byte[] patched = patch( className, classfileBuffer, options, cache );
+                    return patched != null ? patched : replaced;
                 } catch( Throwable th) {
                     th.printStackTrace();
                     throw th;
+                } finally {
+                    metrics.nanos.add( System.nanoTime() - start );
                 }
             }
         } );
     }
+
+    /**
+     * Patch the native methods with Import annotations of a class.
+     * 
+     * @param className
+     *            the internal name of the class
+     * @param classfileBuffer
+     *            the original class file
+     * @param options
+     *            the options of the agent
+     * @param cache
+     *            the transformation cache or null
+     * @return the patched class file or null if the class has no Import annotations
+     */
+    @Nullable
+    private static byte[] patch( String className, byte[] classfileBuffer, EmulatorOptions options, @Nullable TransformCache cache ) {
+        AgentMetrics metrics = AgentMetrics.INSTANCE;
+        String key = null;
+        if( cache != null ) {
+            key = TransformCache.key( className, classfileBuffer );
+            if( cache.isSkipped( key ) ) {
+                return null;
+            }
+            List<ImportAnnotation> cached = new ArrayList<>();
+            byte[] patched = cache.getPatched( key, classfileBuffer, cached );
+            if( patched != null ) {
+                JWebAssemblyEmulator.JavaFxApplication.registerScripts( cached );
+                metrics.patched.increment();
+                metrics.cached.increment();
+                return patched;
+            }
+        }
+
+        Map<String, ImportAnnotation> annotations = new HashMap<>();
+        byte[] patched = ImportPatcher.patch( className, classfileBuffer, options, annotations );
+        if( patched != null ) {
+            JWebAssemblyEmulator.JavaFxApplication.registerScripts( annotations.values() );
+            if( key != null ) {
+                cache.putPatched( key, classfileBuffer, annotations.values(), patched );
+            }
+            metrics.patched.increment();
+        } else if( key != null ) {
+            cache.putSkipped( key );
+        }
+        return patched;
+    }
 }
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2021 Volker Berlin (i-net software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.inetsoftware.jwebassembly.emulator;
+
+import static org.objectweb.asm.Opcodes.ACC_NATIVE;
+import static org.objectweb.asm.Opcodes.ACC_PRIVATE;
+import static org.objectweb.asm.Opcodes.ACC_PROTECTED;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ASM7;
+import static org.objectweb.asm.Opcodes.H_INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.commons.ClassRemapper;
+import org.objectweb.asm.commons.SimpleRemapper;
+
+/**
+ * Apply the replacements of the {@link ReplaceIndex} to a class. The calls of replaced methods are redirected, the
+ * references of replaced classes are renamed, the members of partial classes are added and replacement methods that
+ * are called from other classes are made public.
+ *
+ * @author Volker Berlin
+ */
+class ReplaceClassVisitor extends ClassVisitor {
+
+    private final String       className;
+
+    private final ReplaceIndex index;
+
+    /** if the calls and types should be redirected to the replacements */
+    private final boolean      redirect;
+
+    /** the methods that must be public or null */
+    private final Set<String>  publicMembers;
+
+    /** the fields and methods of the class */
+    private final Set<String>  members = new HashSet<>();
+
+    private boolean            changed;
+
+    /**
+     * Create an instance.
+     *
+     * @param cv
+     *            the class writer
+     * @param className
+     *            the internal name of the class
+     * @param index
+     *            the replacements
+     * @param redirect
+     *            true, if the calls of replaced methods and the references of replaced classes should be redirected
+     */
+    ReplaceClassVisitor( ClassVisitor cv, String className, ReplaceIndex index, boolean redirect ) {
+        super( ASM7 );
+        this.className = className;
+        this.index = index;
+        this.redirect = redirect;
+        this.publicMembers = index.publicMembers( className );
+        Map<String, String> types = index.types();
+        this.cv = !redirect || types.isEmpty() ? cv : new ClassRemapper( cv, new SimpleRemapper( types ) {
+            @Override
+            public String map( String key ) {
+                String value = super.map( key );
+                if( value != null ) {
+                    changed = true;
+                }
+                return value;
+            }
+        } );
+    }
+
+    /**
+     * If the class was changed.
+     *
+     * @return true, if changed
+     */
+    boolean isChanged() {
+        return changed;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void visit( int version, int access, String name, String signature, String superName, String[] interfaces ) {
+        if( publicMembers != null ) {
+            // replacements are called from other packages
+            access = makePublic( access );
+        }
+        super.visit( version, access, name, signature, superName, interfaces );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void visitInnerClass( String name, String outerName, String innerName, int access ) {
+        if( publicMembers != null && className.equals( name ) ) {
+            // the modifiers of a nested class for the reflection
+            access = makePublic( access );
+        }
+        super.visitInnerClass( name, outerName, innerName, access );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public FieldVisitor visitField( int access, String name, String descriptor, String signature, Object value ) {
+        members.add( name );
+        return super.visitField( access, name, descriptor, signature, value );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MethodVisitor visitMethod( int access, String name, String descriptor, String signature, String[] exceptions ) {
+        members.add( name + descriptor );
+        if( publicMembers != null && publicMembers.contains( name + descriptor ) ) {
+            access = makePublic( access );
+        }
+        MethodVisitor mv = super.visitMethod( access, name, descriptor, signature, exceptions );
+        return mv == null ? null : new MethodVisitor( ASM7, mv ) {
+            @Override
+            public void visitMethodInsn( int opcode, String owner, String name, String descriptor, boolean isInterface ) {
+                if( redirect && opcode == INVOKESTATIC ) {
+                    Handle replacement = index.method( owner, name, descriptor );
+                    // a replacement can call the original method
+                    if( replacement != null && !className.equals( replacement.getOwner() ) ) {
+                        changed = true;
+                        super.visitMethodInsn( replacement.getTag() == H_INVOKESTATIC ? INVOKESTATIC : INVOKEVIRTUAL, replacement.getOwner(), replacement.getName(), replacement.getDesc(), false );
+                        return;
+                    }
+                }
+                super.visitMethodInsn( opcode, owner, name, descriptor, isInterface );
+            }
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void visitEnd() {
+        for( byte[] partial : index.partials( className ) ) {
+            merge( new ClassReader( partial ) );
+        }
+        super.visitEnd();
+    }
+
+    /**
+     * Add the fields and methods of a partial class that does not exist in this class. Native methods are placeholders
+     * for existing methods. Constructors and static initializers of a partial class are not added.
+     *
+     * @param partial
+     *            the partial class
+     */
+    private void merge( ClassReader partial ) {
+        ClassVisitor members = new ClassVisitor( ASM7 ) {
+            @Override
+            public FieldVisitor visitField( int access, String name, String descriptor, String signature, Object value ) {
+                if( ReplaceClassVisitor.this.members.contains( name ) ) {
+                    return null;
+                }
+                changed = true;
+                return ReplaceClassVisitor.this.visitField( access, name, descriptor, signature, value );
+            }
+
+            @Override
+            public MethodVisitor visitMethod( int access, String name, String descriptor, String signature, String[] exceptions ) {
+                if( (access & ACC_NATIVE) != 0 || name.charAt( 0 ) == '<' || ReplaceClassVisitor.this.members.contains( name + descriptor ) ) {
+                    return null;
+                }
+                changed = true;
+                return ReplaceClassVisitor.this.visitMethod( access, name, descriptor, signature, exceptions );
+            }
+        };
+        partial.accept( new ClassRemapper( members, new SimpleRemapper( partial.getClassName(), className ) ), 0 );
+    }
+
+    /**
+     * Make a class or member public.
+     *
+     * @param access
+     *            the access flags
+     * @return the new access flags
+     */
+    private int makePublic( int access ) {
+        int newAccess = (access & ~(ACC_PRIVATE | ACC_PROTECTED)) | ACC_PUBLIC;
+        if( newAccess != access ) {
+            changed = true;
+        }
+        return newAccess;
+    }
+}
@@ -0,0 +1,713 @@
+/*
+ * Copyright 2021 Volker Berlin (i-net software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.inetsoftware.jwebassembly.emulator;
+
+import static org.objectweb.asm.Opcodes.ACC_NATIVE;
+import static org.objectweb.asm.Opcodes.ACC_STATIC;
+import static org.objectweb.asm.Opcodes.ASM7;
+import static org.objectweb.asm.Opcodes.H_INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.H_INVOKEVIRTUAL;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+import de.inetsoftware.jwebassembly.api.annotation.Import;
+import de.inetsoftware.jwebassembly.api.annotation.Partial;
+import de.inetsoftware.jwebassembly.api.annotation.Replace;
+import de.inetsoftware.jwebassembly.api.annotation.WasmTextCode;
+import de.inetsoftware.jwebassembly.api.annotation.index.AnnotationIndex;
+
+/**
+ * The Replace and Partial annotations of the classes on the classpath. The javaagent applies the replacements while the
+ * classes are loaded, so that the JVM runs the same replacement code like the WebAssembly.
+ * <ul>
+ * <li>A static method with Replace annotation replaces the calls of a static method.</li>
+ * <li>A class with Replace annotation replaces all references of a class.</li>
+ * <li>The members of a class with Partial annotation are added to the extended class. A method with Replace annotation
+ * in a partial class replaces the calls of a static method whose first parameter is the extended class.</li>
+ * </ul>
+ * Replacements that can not run on the JVM are ignored. This are methods with Import or WasmTextCode annotation which
+ * run in the host or as WebAssembly instructions, replacements of constructors, static initializers and instance
+ * methods and partial classes of the Java runtime which is already loaded.
+ *
+ * @author Volker Berlin
+ */
+class ReplaceIndex {
+
+    private static final String             REPLACE       = Type.getDescriptor( Replace.class );
+
+    private static final String             PARTIAL       = Type.getDescriptor( Partial.class );
+
+    private static final String             IMPORT        = Type.getDescriptor( Import.class );
+
+    private static final String             WASM_TEXT     = Type.getDescriptor( WasmTextCode.class );
+
+    private static final byte[][]           ANNOTATIONS   = { REPLACE.getBytes( StandardCharsets.UTF_8 ), PARTIAL.getBytes( StandardCharsets.UTF_8 ) };
+
+    /** the replacements of static methods, key is owner, name and descriptor like "java/lang/Math.sin(D)D" */
+    private final Map<String, Handle>       methods       = new HashMap<>();
+
+    /** the replaced classes, value is the replacement class */
+    private final Map<String, String>       types         = new HashMap<>();
+
+    /** the partial classes, key is the extended class */
+    private final Map<String, List<byte[]>> partials      = new HashMap<>();
+
+    /** the classes that must be public, value are the methods (name and descriptor) that must be public */
+    private final Map<String, Set<String>>  publicMembers = new HashMap<>();
+
+    /** the owners of the replaced methods */
+    private final Set<String>               owners        = new HashSet<>();
+
+    /** the lengths of the owners of the replaced methods for a fast constant pool scan */
+    private final BitSet                    ownerLengths  = new BitSet();
+
+    private byte[][]                        typeNames     = new byte[0][];
+
+    private int                             ignored;
+
+    /**
+     * Scan the classpath and the javaagent for replacements. Every jar file and directory with an
+     * {@link AnnotationIndex} is read from the index. All other entries are scanned class by class, for example classes
+     * that was compiled without annotation processing, with an older API or with a JDK that does not run the processors
+     * of the classpath.
+     *
+     * @return the index
+     */
+    @Nonnull
+    static ReplaceIndex scan() {
+        Set<File> roots = new LinkedHashSet<>();
+        CodeSource source = PremainEmulator.class.getProtectionDomain().getCodeSource();
+        URL location = source == null ? null : source.getLocation();
+        if( location != null && "file".equals( location.getProtocol() ) ) {
+            roots.add( new File( location.getPath() ).getAbsoluteFile() );
+        }
+        for( String path : System.getProperty( "java.class.path", "" ).split( File.pathSeparator ) ) {
+            if( !path.isEmpty() ) {
+                roots.add( new File( path ).getAbsoluteFile() );
+            }
+        }
+
+        ReplaceIndex index = new ReplaceIndex();
+        for( File root : roots ) {
+            try {
+                if( index.readIndex( root ) ) {
+                    continue;
+                }
+                if( root.isDirectory() ) {
+                    index.scanDirectory( root );
+                } else if( root.isFile() ) {
+                    index.scanJar( root );
+                }
+            } catch( IOException ex ) {
+                System.err.println( "JWebAssembly: can not scan " + root + " for replacements: " + ex );
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Read the replacements from the annotation index of a directory or jar file.
+     *
+     * @param root
+     *            the classpath entry
+     * @return false, if there is no annotation index
+     * @throws IOException
+     *             if any I/O error occur
+     */
+    private boolean readIndex( File root ) throws IOException {
+        if( root.isDirectory() ) {
+            File file = new File( root, AnnotationIndex.RESOURCE );
+            if( !file.isFile() ) {
+                return false;
+            }
+            try( InputStream input = new FileInputStream( file ) ) {
+                add( AnnotationIndex.read( input ), className -> Files.readAllBytes( new File( root, className + ".class" ).toPath() ) );
+            }
+            return true;
+        }
+        if( !root.isFile() ) {
+            return false;
+        }
+        try( JarFile jar = new JarFile( root ) ) {
+            JarEntry entry = jar.getJarEntry( AnnotationIndex.RESOURCE );
+            if( entry == null ) {
+                return false;
+            }
+            try( InputStream input = jar.getInputStream( entry ) ) {
+                add( AnnotationIndex.read( input ), className -> {
+                    try( InputStream stream = jar.getInputStream( jar.getJarEntry( className + ".class" ) ) ) {
+                        return readAll( stream );
+                    }
+                } );
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Add the replacements of an annotation index.
+     *
+     * @param annotationIndex
+     *            the index
+     * @param classFiles
+     *            the reader for the class files of partial classes
+     * @throws IOException
+     *             if any I/O error occur
+     */
+    private void add( AnnotationIndex annotationIndex, ClassFiles classFiles ) throws IOException {
+        Map<String, ReplaceScanner> classes = new LinkedHashMap<>();
+        Set<String> hostMethods = new HashSet<>();
+        for( AnnotationIndex.Entry entry : annotationIndex.entries() ) {
+            String annotation = entry.getAnnotation();
+            String member = entry.getClassName() + '.' + entry.getName() + entry.getDescriptor();
+            if( annotation.equals( Import.class.getName() ) || annotation.equals( WasmTextCode.class.getName() ) ) {
+                hostMethods.add( member );
+                continue;
+            }
+            ReplaceScanner scanner = classes.computeIfAbsent( entry.getClassName(), name -> new ReplaceScanner() );
+            scanner.className = entry.getClassName();
+            if( annotation.equals( Partial.class.getName() ) ) {
+                scanner.partial = entry.getValue( "value" );
+            } else if( annotation.equals( Replace.class.getName() ) ) {
+                if( entry.getName().isEmpty() ) {
+                    scanner.replace = entry.getValue( "value" );
+                } else {
+                    ReplaceMethod method = new ReplaceMethod();
+                    method.access = entry.getAccess();
+                    method.name = entry.getName();
+                    method.desc = entry.getDescriptor();
+                    method.replace = entry.getValue( "value" );
+                    method.host = (method.access & ACC_NATIVE) != 0;
+                    scanner.methods.add( method );
+                }
+            }
+        }
+        for( ReplaceScanner scanner : classes.values() ) {
+            for( ReplaceMethod method : scanner.methods ) {
+                method.host |= hostMethods.contains( scanner.className + '.' + method.name + method.desc );
+            }
+            add( scanner, scanner.partial == null || isRuntimeClass( scanner.partial ) ? null : classFiles.read( scanner.className ) );
+        }
+    }
+
+    /**
+     * Scan all classes of a directory for replacements.
+     *
+     * @param root
+     *            the directory
+     * @throws IOException
+     *             if any I/O error occur
+     */
+    private void scanDirectory( File root ) throws IOException {
+        List<Path> files;
+        try( Stream<Path> stream = Files.walk( root.toPath() ) ) {
+            files = stream.filter( file -> file.toString().endsWith( ".class" ) ).collect( Collectors.toList() );
+        }
+        for( Path file : files ) {
+            scan( Files.readAllBytes( file ) );
+        }
+    }
+
+    /**
+     * Scan all classes of a jar file for replacements.
+     *
+     * @param root
+     *            the jar file
+     * @throws IOException
+     *             if any I/O error occur
+     */
+    private void scanJar( File root ) throws IOException {
+        try( JarFile jar = new JarFile( root ) ) {
+            Enumeration<JarEntry> entries = jar.entries();
+            while( entries.hasMoreElements() ) {
+                JarEntry entry = entries.nextElement();
+                if( entry.getName().endsWith( ".class" ) ) {
+                    try( InputStream input = jar.getInputStream( entry ) ) {
+                        scan( readAll( input ) );
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Add the replacements of a single class.
+     *
+     * @param bytes
+     *            the class file
+     */
+    void scan( byte[] bytes ) {
+        if( !ImportPrefilter.scanUtf8( bytes, ReplaceIndex::isAnnotation ) ) {
+            return;
+        }
+        ReplaceScanner scanner = new ReplaceScanner();
+        new ClassReader( bytes ).accept( scanner, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES );
+        add( scanner, bytes );
+    }
+
+    /**
+     * Add the replacements of a single class.
+     *
+     * @param scanner
+     *            the annotations of the class
+     * @param bytes
+     *            the class file, required for partial classes
+     */
+    private void add( ReplaceScanner scanner, byte[] bytes ) {
+        String className = scanner.className;
+        String partial = scanner.partial;
+        if( scanner.replace != null ) {
+            types.put( scanner.replace, className );
+            typeNames = types.keySet().stream().map( name -> name.getBytes( StandardCharsets.UTF_8 ) ).toArray( byte[][]::new );
+            publicMembers.computeIfAbsent( className, key -> new HashSet<>() );
+        }
+        if( partial != null ) {
+            if( isRuntimeClass( partial ) ) {
+                ignored++;
+                partial = null;
+            } else {
+                partials.computeIfAbsent( partial, key -> new ArrayList<>() ).add( bytes );
+                publicMembers.computeIfAbsent( partial, key -> new HashSet<>() );
+            }
+        }
+        for( ReplaceMethod method : scanner.methods ) {
+            if( !addMethod( className, scanner.partial, partial != null, method ) ) {
+                ignored++;
+            }
+        }
+    }
+
+    /**
+     * Add a method replacement.
+     *
+     * @param className
+     *            the class of the replacement method
+     * @param partial
+     *            the extended class if the class is a partial class
+     * @param merge
+     *            true, if the partial class can be merged
+     * @param method
+     *            the replacement method
+     * @return false, if the replacement can not run on the JVM
+     */
+    private boolean addMethod( String className, @Nullable String partial, boolean merge, ReplaceMethod method ) {
+        if( method.host ) {
+            return false;
+        }
+        int access = method.access;
+        String name = method.name;
+        String desc = method.desc;
+        String replace = method.replace;
+        int paramStart = replace.indexOf( '(' );
+        int nameStart = replace.lastIndexOf( '.', paramStart ) + 1;
+        if( paramStart < 0 || nameStart == 0 || replace.charAt( nameStart ) == '<' ) {
+            // constructors and static initializers can not be replaced on the JVM
+            return false;
+        }
+        String owner = replace.substring( 0, nameStart - 1 );
+        String replacedDesc = replace.substring( paramStart );
+        Handle handle;
+        String memberClass;
+        if( partial == null ) {
+            if( (access & ACC_STATIC) == 0 || !desc.equals( replacedDesc ) ) {
+                return false;
+            }
+            handle = new Handle( H_INVOKESTATIC, className, name, desc, false );
+            memberClass = className;
+        } else {
+            if( !merge || (access & ACC_STATIC) != 0 || !replacedDesc.equals( "(L" + partial + ';' + desc.substring( 1 ) ) ) {
+                return false;
+            }
+            handle = new Handle( H_INVOKEVIRTUAL, partial, name, desc, false );
+            memberClass = partial;
+        }
+        methods.put( replace, handle );
+        publicMembers.computeIfAbsent( memberClass, key -> new HashSet<>() ).add( name + desc );
+        owners.add( owner );
+        ownerLengths.set( owner.length() );
+        return true;
+    }
+
+    /**
+     * If the index contains no replacements that can run on the JVM.
+     *
+     * @return true, if empty
+     */
+    boolean isEmpty() {
+        return methods.isEmpty() && types.isEmpty() && partials.isEmpty();
+    }
+
+    /**
+     * A summary for the report of the agent.
+     *
+     * @return the summary
+     */
+    @Override
+    public String toString() {
+        return methods.size() + " method replacements, " + types.size() + " type replacements, " + partials.size() + " partial classes, " + ignored + " replacements that can not run on the JVM";
+    }
+
+    /**
+     * If a class is part of the Java runtime and can not be changed.
+     *
+     * @param className
+     *            the internal name of the class
+     * @return true, if runtime class
+     */
+    static boolean isRuntimeClass( String className ) {
+        return className.startsWith( "java/" ) || className.startsWith( "javax/" ) || className.startsWith( "jdk/" ) || className.startsWith( "sun/" ) || className.startsWith( "com/sun/" );
+    }
+
+    /**
+     * Get the replacement of a static method.
+     *
+     * @param owner
+     *            the class of the called method
+     * @param name
+     *            the name of the called method
+     * @param desc
+     *            the descriptor of the called method
+     * @return the replacement or null
+     */
+    @Nullable
+    Handle method( String owner, String name, String desc ) {
+        return ownerLengths.get( owner.length() ) ? methods.get( owner + '.' + name + desc ) : null;
+    }
+
+    /**
+     * The replaced classes.
+     *
+     * @return the internal name of the replaced classes, value is the replacement class
+     */
+    @Nonnull
+    Map<String, String> types() {
+        return types;
+    }
+
+    /**
+     * The methods of a class that must be public because they are called from other classes.
+     *
+     * @param className
+     *            the internal name of the class
+     * @return the name and descriptor of the methods or null if the class is not a replacement
+     */
+    @Nullable
+    Set<String> publicMembers( String className ) {
+        return publicMembers.get( className );
+    }
+
+    /**
+     * The partial classes of a class.
+     *
+     * @param className
+     *            the internal name of the class
+     * @return the class files of the partial classes
+     */
+    @Nonnull
+    List<byte[]> partials( String className ) {
+        return partials.getOrDefault( className, Collections.emptyList() );
+    }
+
+    /**
+     * Apply the replacements to a class.
+     *
+     * @param className
+     *            the internal name of the class
+     * @param bytes
+     *            the class file
+     * @param redirect
+     *            true, if the calls of the class should be redirected to the replacements
+     * @return the changed class file or null if there are no changes
+     */
+    @Nullable
+    byte[] patch( String className, byte[] bytes, boolean redirect ) {
+        if( !publicMembers.containsKey( className ) && !(redirect && ImportPrefilter.scanUtf8( bytes, this::isReplaced )) ) {
+            return null;
+        }
+        ClassReader cr = new ClassReader( bytes );
+        // the replacements does not change any branch, the stack map frames can be copied
+        ClassWriter cw = new ClassWriter( cr, ClassWriter.COMPUTE_MAXS );
+        ReplaceClassVisitor visitor = new ReplaceClassVisitor( cw, className, this, redirect );
+        cr.accept( visitor, 0 );
+        return visitor.isChanged() ? cw.toByteArray() : null;
+    }
+
+    /**
+     * If a UTF8 entry of a constant pool is the owner of a replaced method or contains a replaced class.
+     *
+     * @param bytes
+     *            the class file
+     * @param offset
+     *            the offset of the UTF8 bytes
+     * @param size
+     *            the count of UTF8 bytes
+     * @return true, if the class can reference a replacement
+     */
+    private boolean isReplaced( byte[] bytes, int offset, int size ) {
+        if( ownerLengths.get( size ) && owners.contains( new String( bytes, offset, size, StandardCharsets.UTF_8 ) ) ) {
+            return true;
+        }
+        for( byte[] name : typeNames ) {
+            if( indexOf( bytes, offset, size, name ) >= 0 ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * If a UTF8 entry of a constant pool is the descriptor of the Replace or Partial annotation.
+     *
+     * @param bytes
+     *            the class file
+     * @param offset
+     *            the offset of the UTF8 bytes
+     * @param size
+     *            the count of UTF8 bytes
+     * @return true, if match
+     */
+    private static boolean isAnnotation( byte[] bytes, int offset, int size ) {
+        for( byte[] annotation : ANNOTATIONS ) {
+            if( size == annotation.length && indexOf( bytes, offset, size, annotation ) == offset ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Search a byte sequence.
+     *
+     * @param bytes
+     *            the bytes
+     * @param offset
+     *            the start of the range
+     * @param size
+     *            the size of the range
+     * @param pattern
+     *            the searched bytes
+     * @return the position or -1 if not found
+     */
+    private static int indexOf( byte[] bytes, int offset, int size, byte[] pattern ) {
+        int last = offset + size - pattern.length;
+        outer: for( int i = offset; i <= last; i++ ) {
+            for( int j = 0; j < pattern.length; j++ ) {
+                if( bytes[i + j] != pattern[j] ) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Read a stream completely.
+     *
+     * @param input
+     *            the stream
+     * @return the bytes
+     * @throws IOException
+     *             if any I/O error occur
+     */
+    static byte[] readAll( InputStream input ) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        for( int count; (count = input.read( buffer )) > 0; ) {
+            output.write( buffer, 0, count );
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * The Replace and Partial annotations of a class. It is read from the class file or filled from an annotation index.
+     */
+    private static class ReplaceScanner extends ClassVisitor {
+
+        private String                    className;
+
+        /** the value of the Replace annotation of the class */
+        private String                    replace;
+
+        /** the value of the Partial annotation of the class */
+        private String                    partial;
+
+        /** the methods with Replace annotation */
+        private final List<ReplaceMethod> methods = new ArrayList<>();
+
+        /**
+         * Create an instance.
+         */
+        ReplaceScanner() {
+            super( ASM7 );
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void visit( int version, int access, String name, String signature, String superName, String[] interfaces ) {
+            className = name;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public AnnotationVisitor visitAnnotation( String descriptor, boolean visible ) {
+            if( REPLACE.equals( descriptor ) ) {
+                return new ValueVisitor( value -> replace = value );
+            }
+            if( PARTIAL.equals( descriptor ) ) {
+                return new ValueVisitor( value -> partial = value );
+            }
+            return null;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public MethodVisitor visitMethod( int access, String name, String descriptor, String signature, String[] exceptions ) {
+            ReplaceMethod method = new ReplaceMethod();
+            method.access = access;
+            method.name = name;
+            method.desc = descriptor;
+            method.host = (access & ACC_NATIVE) != 0;
+            return new MethodVisitor( ASM7 ) {
+                @Override
+                public AnnotationVisitor visitAnnotation( String desc, boolean visible ) {
+                    if( REPLACE.equals( desc ) ) {
+                        return new ValueVisitor( value -> method.replace = value );
+                    }
+                    if( IMPORT.equals( desc ) || WASM_TEXT.equals( desc ) ) {
+                        // the implementation run in the host or as WebAssembly instructions
+                        method.host = true;
+                    }
+                    return null;
+                }
+
+                @Override
+                public void visitEnd() {
+                    if( method.replace != null ) {
+                        methods.add( method );
+                    }
+                }
+            };
+        }
+    }
+
+    /**
+     * Read the class file of a class from a classpath entry.
+     */
+    @FunctionalInterface
+    private static interface ClassFiles {
+
+        /**
+         * Read the class file.
+         *
+         * @param className
+         *            the internal name of the class
+         * @return the class file
+         * @throws IOException
+         *             if any I/O error occur
+         */
+        byte[] read( String className ) throws IOException;
+    }
+
+    /**
+     * A method with Replace annotation.
+     */
+    private static class ReplaceMethod {
+
+        private int     access;
+
+        private String  name;
+
+        private String  desc;
+
+        /** the value of the Replace annotation */
+        private String  replace;
+
+        /** true, if the method is native or has an Import or WasmTextCode annotation */
+        private boolean host;
+    }
+
+    /**
+     * Read the value of an annotation.
+     */
+    private static class ValueVisitor extends AnnotationVisitor {
+
+        private final Consumer<String> consumer;
+
+        /**
+         * Create an instance.
+         *
+         * @param consumer
+         *            receive the value
+         */
+        ValueVisitor( Consumer<String> consumer ) {
+            super( ASM7 );
+            this.consumer = consumer;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void visit( String name, Object value ) {
+            if( "value".equals( name ) ) {
+                consumer.accept( (String)value );
+            }
+        }
+    }
+}
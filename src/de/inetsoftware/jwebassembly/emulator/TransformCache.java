@@ -0,0 +1,339 @@
+/*
+ * Copyright 2021 Volker Berlin (i-net software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.inetsoftware.jwebassembly.emulator;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * A persistent cache for the results of the class transformation of the javaagent. The cache contains the patched
+ * bytes and the import functions of classes with Import annotations and the verdicts of classes without Import
+ * annotations. The cache directory is reused over multiple runs of the JVM and has a sub directory for every version
+ * of the agent and its options.
+ * <p>
+ * A class is identified by its name, its length and a CRC32 and Adler32 checksum of its bytes. This is many times
+ * faster than parsing the class and much faster than a cryptographic hash. Entries of patched classes also contain the
+ * SHA-256 of the original bytes which is verified on reading.
+ *
+ * @author Volker Berlin
+ */
+class TransformCache {
+
+    /** the file with the keys of classes without Import annotations */
+    private static final String SKIP_FILE = "skip.idx";
+
+    private final File          dir;
+
+    /** classes without Import annotations from previous runs */
+    private final Set<String>   skip;
+
+    /** classes without Import annotations of the current run */
+    private final Set<String>   newSkip   = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Create an instance and read the verdicts of previous runs.
+     *
+     * @param baseDir
+     *            the cache directory
+     * @param options
+     *            the options of the agent that change the transformation
+     */
+    private TransformCache( File baseDir, String options ) {
+        dir = new File( baseDir, version( options ) );
+        dir.mkdirs();
+        skip = readSkip( new File( dir, SKIP_FILE ) );
+    }
+
+    /**
+     * Create the cache for the given options and write the new verdicts on exit.
+     *
+     * @param options
+     *            the options of the agent
+     * @return the cache or null if the cache is disabled
+     */
+    @Nullable
+    static TransformCache create( @Nonnull EmulatorOptions options ) {
+        if( options.cacheDir == null ) {
+            return null;
+        }
+        TransformCache cache = new TransformCache( new File( options.cacheDir ), "metrics=" + options.metrics + ";probes=" + options.probes );
+        Runtime.getRuntime().addShutdownHook( new Thread( cache::writeSkip, "JWebAssembly Transform Cache" ) );
+        return cache;
+    }
+
+    /**
+     * Calculate the name of the sub directory for the current version of the agent. If the agent is loaded from a jar
+     * file then its size and time stamp are part of the version so that every build has its own directory.
+     *
+     * @param options
+     *            the options of the agent that change the transformation
+     * @return the version key
+     */
+    private static String version( String options ) {
+        StringBuilder version = new StringBuilder();
+        version.append( PremainEmulator.class.getPackage().getImplementationVersion() ).append( ';' ).append( options );
+        CodeSource source = PremainEmulator.class.getProtectionDomain().getCodeSource();
+        URL location = source == null ? null : source.getLocation();
+        if( location != null && "file".equals( location.getProtocol() ) ) {
+            File file = new File( location.getPath() );
+            version.append( ';' ).append( file.length() ).append( ';' ).append( file.lastModified() );
+        }
+        return toHex( sha256( version.toString().getBytes( StandardCharsets.UTF_8 ) ), 16 );
+    }
+
+    /**
+     * Calculate the key of a class.
+     *
+     * @param className
+     *            the internal name of the class
+     * @param bytes
+     *            the original bytes of the class
+     * @return the key
+     */
+    static String key( String className, byte[] bytes ) {
+        CRC32 crc = new CRC32();
+        crc.update( bytes, 0, bytes.length );
+        Adler32 adler = new Adler32();
+        adler.update( bytes, 0, bytes.length );
+        return className + '@' + bytes.length + '@' + Long.toHexString( crc.getValue() << 32 | adler.getValue() );
+    }
+
+    /**
+     * If the class has no Import annotations in a previous run.
+     *
+     * @param key
+     *            the key of the class
+     * @return true, if the class must not be patched
+     */
+    boolean isSkipped( String key ) {
+        return skip.contains( key );
+    }
+
+    /**
+     * Save the verdict that a class has no Import annotations.
+     *
+     * @param key
+     *            the key of the class
+     */
+    void putSkipped( String key ) {
+        newSkip.add( key );
+    }
+
+    /**
+     * Read a patched class from the cache.
+     *
+     * @param key
+     *            the key of the class
+     * @param bytes
+     *            the original bytes of the class
+     * @param annotations
+     *            container for the import functions of the class
+     * @return the patched bytes or null if not in the cache
+     */
+    @Nullable
+    byte[] getPatched( String key, byte[] bytes, Collection<ImportAnnotation> annotations ) {
+        File file = file( key );
+        if( !file.isFile() ) {
+            return null;
+        }
+        try( DataInputStream input = new DataInputStream( new FileInputStream( file ) ) ) {
+            byte[] hash = new byte[32];
+            input.readFully( hash );
+            if( !Arrays.equals( hash, sha256( bytes ) ) ) {
+                return null;
+            }
+            List<ImportAnnotation> list = new ArrayList<>();
+            for( int i = input.readInt(); i > 0; i-- ) {
+                ImportAnnotation anno = new ImportAnnotation();
+                anno.module = input.readUTF();
+                anno.name = input.readUTF();
+                anno.javaScript = input.readBoolean() ? input.readUTF() : null;
+                list.add( anno );
+            }
+            byte[] patched = new byte[input.readInt()];
+            input.readFully( patched );
+            annotations.addAll( list );
+            return patched;
+        } catch( IOException ex ) {
+            // a broken entry is handled like a missing entry
+            return null;
+        }
+    }
+
+    /**
+     * Save a patched class in the cache.
+     *
+     * @param key
+     *            the key of the class
+     * @param bytes
+     *            the original bytes of the class
+     * @param annotations
+     *            the import functions of the class
+     * @param patched
+     *            the patched bytes
+     */
+    void putPatched( String key, byte[] bytes, Collection<ImportAnnotation> annotations, byte[] patched ) {
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream( patched.length + 256 );
+            DataOutputStream output = new DataOutputStream( buffer );
+            output.write( sha256( bytes ) );
+            output.writeInt( annotations.size() );
+            for( ImportAnnotation anno : annotations ) {
+                output.writeUTF( anno.module );
+                output.writeUTF( anno.name );
+                output.writeBoolean( anno.javaScript != null );
+                if( anno.javaScript != null ) {
+                    output.writeUTF( anno.javaScript );
+                }
+            }
+            output.writeInt( patched.length );
+            output.write( patched );
+
+            // write to a temporary file and rename it, so that a parallel JVM never see a partial entry
+            File file = file( key );
+            File temp = File.createTempFile( "class", ".tmp", dir );
+            Files.write( temp.toPath(), buffer.toByteArray() );
+            Files.move( temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+        } catch( IOException ex ) {
+            // the cache is only an optimization
+        }
+    }
+
+    /**
+     * The file of a patched class.
+     *
+     * @param key
+     *            the key of the class
+     * @return the file
+     */
+    private File file( String key ) {
+        return new File( dir, key.replace( '/', '.' ).replace( '$', '_' ).replace( '@', '-' ) + ".class" );
+    }
+
+    /**
+     * Read the keys of classes without Import annotations.
+     *
+     * @param file
+     *            the index file
+     * @return the keys
+     */
+    private static Set<String> readSkip( File file ) {
+        Set<String> keys = new HashSet<>();
+        if( !file.isFile() ) {
+            return keys;
+        }
+        try( DataInputStream input = new DataInputStream( new BufferedInputStream( new FileInputStream( file ), 65536 ) ) ) {
+            while( true ) {
+                keys.add( input.readUTF() );
+            }
+        } catch( EOFException ex ) {
+            // the end of the file, a partial last entry is ignored
+        } catch( IOException ex ) {
+            // the cache is only an optimization
+        }
+        return keys;
+    }
+
+    /**
+     * Append the keys of the current run to the index file. The file is locked because multiple JVMs can share the
+     * cache, for example parallel test forks.
+     */
+    private void writeSkip() {
+        newSkip.removeAll( skip );
+        if( newSkip.isEmpty() ) {
+            return;
+        }
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            DataOutputStream output = new DataOutputStream( buffer );
+            for( String key : newSkip ) {
+                output.writeUTF( key );
+            }
+            try( FileOutputStream stream = new FileOutputStream( new File( dir, SKIP_FILE ), true ); //
+                            FileChannel channel = stream.getChannel() ) {
+                FileLock lock = channel.lock();
+                try {
+                    stream.write( buffer.toByteArray() );
+                } finally {
+                    lock.release();
+                }
+            }
+        } catch( IOException ex ) {
+            // the cache is only an optimization
+        }
+    }
+
+    /**
+     * Calculate the SHA-256 hash.
+     *
+     * @param bytes
+     *            the data
+     * @return the hash
+     */
+    private static byte[] sha256( byte[] bytes ) {
+        try {
+            return MessageDigest.getInstance( "SHA-256" ).digest( bytes );
+        } catch( NoSuchAlgorithmException ex ) {
+            // every Java platform must support SHA-256
+            throw new IllegalStateException( ex );
+        }
+    }
+
+    /**
+     * Convert the first bytes to a hex string.
+     *
+     * @param bytes
+     *            the bytes
+     * @param count
+     *            the count of bytes
+     * @return the hex string
+     */
+    private static String toHex( byte[] bytes, int count ) {
+        StringBuilder builder = new StringBuilder();
+        for( int i = 0; i < count; i++ ) {
+            builder.append( Character.forDigit( (bytes[i] >> 4) & 0xF, 16 ) ).append( Character.forDigit( bytes[i] & 0xF, 16 ) );
+        }
+        return builder.toString();
+    }
+}
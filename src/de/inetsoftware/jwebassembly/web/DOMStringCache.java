@@ -0,0 +1,93 @@
+/*
+ * Copyright 2021 Volker Berlin (i-net software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.inetsoftware.jwebassembly.web;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A bounded cache of the DOMStrings for the Java VM. Property and method names like "length" or "nodeType" are
+ * converted on every access of a JSObject. The cache is a direct mapped table without locks. A slot is simply
+ * overwritten on a collision, so the size is fixed and a lost race only create an additional instance. Long strings
+ * are typical values and not names, they are never cached to not hold large strings in memory.
+ * <p>
+ * In WebAssembly {@link JSObject#domString(String)} is replaced and the DOMString is cached in the String itself.
+ * Therefore this class is only used in the Java VM.
+ *
+ * @author Volker Berlin
+ */
+final class DOMStringCache {
+
+    /** the count of slots, must be a power of 2 */
+    private static final int    SIZE       = 256;
+
+    /** the maximum length of a cached string */
+    private static final int    MAX_LENGTH = 32;
+
+    private static final Name[] ENTRIES    = new Name[SIZE];
+
+    /**
+     * No instances.
+     */
+    private DOMStringCache() {
+    }
+
+    /**
+     * Get the cached DOMString of a Java string or create a new.
+     *
+     * @param str
+     *            the Java string
+     * @return the DOMString
+     */
+    @Nonnull
+    static DOMString get( @Nonnull String str ) {
+        if( str.length() > MAX_LENGTH ) {
+            return new Name( str );
+        }
+        int idx = str.hashCode() & (SIZE - 1);
+        Name name = ENTRIES[idx];
+        if( name == null || !str.equals( name.str ) ) {
+            name = new Name( str );
+            ENTRIES[idx] = name;
+        }
+        return name;
+    }
+
+    /**
+     * A DOMString in the Java VM. The final field make it safe to read an entry of the table from another thread.
+     */
+    private static class Name implements DOMString {
+
+        private final String str;
+
+        /**
+         * Create an instance.
+         *
+         * @param str
+         *            the Java string
+         */
+        private Name( String str ) {
+            this.str = str;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return str;
+        }
+    }
+}
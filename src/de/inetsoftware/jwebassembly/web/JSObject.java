@@ -1,5 +1,5 @@
 /*
- * Copyright 2019 - 2020 Volker Berlin (i-net software)
+ * Copyright 2019 - 2021 Volker Berlin (i-net software)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -121,6 +121,167 @@ protected void set( @Nonnull String propName, String value ) {
         set0( peer, domString( propName ), domString( value ) );
     }
 
+    /**
+     * Native get a numeric JavaScript property value as i32 without boxing.
+     * 
+     * @param peer
+     *            the JavaScript object
+     * @param propName
+     *            the name of the property as DOMString
+     * @return the value of the property
+     */
+    @Import( module = WEB, js = "(o,p)=>o[p]|0" )
+    private static native int getInt0( Object peer, DOMString propName );
+
+    /**
+     * Native get a numeric JavaScript property value as f64 without boxing.
+     * 
+     * @param peer
+     *            the JavaScript object
+     * @param propName
+     *            the name of the property as DOMString
+     * @return the value of the property
+     */
+    @Import( module = WEB, js = "(o,p)=>+o[p]" )
+    private static native double getDouble0( Object peer, DOMString propName );
+
+    /**
+     * Native get a JavaScript property value as boolean without boxing.
+     * 
+     * @param peer
+     *            the JavaScript object
+     * @param propName
+     *            the name of the property as DOMString
+     * @return the value of the property
+     */
+    @Import( module = WEB, js = "(o,p)=>!!o[p]" )
+    private static native boolean getBoolean0( Object peer, DOMString propName );
+
+    /**
+     * Native set a numeric JavaScript property value from an i32 without boxing.
+     * 
+     * @param peer
+     *            the JavaScript object
+     * @param propName
+     *            the name of the property as DOMString
+     * @param value
+     *            the value of the property
+     */
+    @Import( module = WEB, js = "(o,p,v)=>o[p]=v" )
+    private static native void setInt0( Object peer, DOMString propName, int value );
+
+    /**
+     * Native set a numeric JavaScript property value from a f64 without boxing.
+     * 
+     * @param peer
+     *            the JavaScript object
+     * @param propName
+     *            the name of the property as DOMString
+     * @param value
+     *            the value of the property
+     */
+    @Import( module = WEB, js = "(o,p,v)=>o[p]=v" )
+    private static native void setDouble0( Object peer, DOMString propName, double value );
+
+    /**
+     * Native set a JavaScript property value from a boolean without boxing. A boolean is passed as i32.
+     * 
+     * @param peer
+     *            the JavaScript object
+     * @param propName
+     *            the name of the property as DOMString
+     * @param value
+     *            the value of the property
+     */
+    @Import( module = WEB, js = "(o,p,v)=>o[p]=!!v" )
+    private static native void setBoolean0( Object peer, DOMString propName, boolean value );
+
+    /**
+     * Get the value of a numeric property of this object as int. Use this instead of {@link #get(String)} for
+     * properties that are read often because the value is not boxed.
+     * 
+     * @param propName
+     *            the name of the property
+     * @return the value of the property, converted like with ToInt32 in JavaScript
+     */
+    protected int getInt( @Nonnull String propName ) {
+        return getInt0( peer, domString( propName ) );
+    }
+
+    /**
+     * Get the value of a numeric property of this object as double. Use this instead of {@link #get(String)} for
+     * properties that are read often because the value is not boxed.
+     * 
+     * @param propName
+     *            the name of the property
+     * @return the value of the property
+     */
+    protected double getDouble( @Nonnull String propName ) {
+        return getDouble0( peer, domString( propName ) );
+    }
+
+    /**
+     * Get the value of a boolean property of this object. Use this instead of {@link #get(String)} for properties
+     * that are read often because the value is not boxed.
+     * 
+     * @param propName
+     *            the name of the property
+     * @return the value of the property, converted like with ToBoolean in JavaScript
+     */
+    protected boolean getBoolean( @Nonnull String propName ) {
+        return getBoolean0( peer, domString( propName ) );
+    }
+
+    /**
+     * Set the value of a numeric property of this object.
+     * 
+     * @param propName
+     *            the name of the property
+     * @param value
+     *            the value of the property
+     */
+    protected void setInt( @Nonnull String propName, int value ) {
+        setInt0( peer, domString( propName ), value );
+    }
+
+    /**
+     * Set the value of a numeric property of this object.
+     * 
+     * @param propName
+     *            the name of the property
+     * @param value
+     *            the value of the property
+     */
+    protected void setDouble( @Nonnull String propName, double value ) {
+        setDouble0( peer, domString( propName ), value );
+    }
+
+    /**
+     * Set the value of a boolean property of this object.
+     * 
+     * @param propName
+     *            the name of the property
+     * @param value
+     *            the value of the property
+     */
+    protected void setBoolean( @Nonnull String propName, boolean value ) {
+        setBoolean0( peer, domString( propName ), value );
+    }
+
+    /**
+     * Native invoke a JavaScript method with no parameters.
+     * 
+     * @param <T>
+     *            the return type
+     * @param peer
+     *            the JavaScript object
+     * @param methodName
+     *            the method name
+     * @return the return value
+     */
+    @Import( module = WEB, js = "(o,m)=>o[m]()" )
+    private static native <T> T invoke0( Object peer, DOMString methodName );
+
     /**
      * Native invoke a JavaScript method with one parameter.
      * 
@@ -135,7 +296,256 @@ protected void set( @Nonnull String propName, String value ) {
      * @return the return value
      */
     @Import( module = WEB, js = "(o,m,p1)=>o[m](p1)" )
-    private static native <T> T invoke0( Object peer, DOMString methodName, Object param1 );
+    private static native <T> T invoke1( Object peer, DOMString methodName, Object param1 );
+
+    /**
+     * Native invoke a JavaScript method with two parameters.
+     * 
+     * @param <T>
+     *            the return type
+     * @param peer
+     *            the JavaScript object
+     * @param methodName
+     *            the method name
+     * @param param1
+     *            the first parameter
+     * @param param2
+     *            the second parameter
+     * @return the return value
+     */
+    @Import( module = WEB, js = "(o,m,p1,p2)=>o[m](p1,p2)" )
+    private static native <T> T invoke2( Object peer, DOMString methodName, Object param1, Object param2 );
+
+    /**
+     * Native invoke a JavaScript method with three parameters.
+     * 
+     * @param <T>
+     *            the return type
+     * @param peer
+     *            the JavaScript object
+     * @param methodName
+     *            the method name
+     * @param param1
+     *            the first parameter
+     * @param param2
+     *            the second parameter
+     * @param param3
+     *            the third parameter
+     * @return the return value
+     */
+    @Import( module = WEB, js = "(o,m,p1,p2,p3)=>o[m](p1,p2,p3)" )
+    private static native <T> T invoke3( Object peer, DOMString methodName, Object param1, Object param2, Object param3 );
+
+    /**
+     * Native invoke a JavaScript method with four parameters.
+     * 
+     * @param <T>
+     *            the return type
+     * @param peer
+     *            the JavaScript object
+     * @param methodName
+     *            the method name
+     * @param param1
+     *            the first parameter
+     * @param param2
+     *            the second parameter
+     * @param param3
+     *            the third parameter
+     * @param param4
+     *            the fourth parameter
+     * @return the return value
+     */
+    @Import( module = WEB, js = "(o,m,p1,p2,p3,p4)=>o[m](p1,p2,p3,p4)" )
+    private static native <T> T invoke4( Object peer, DOMString methodName, Object param1, Object param2, Object param3, Object param4 );
+
+    /**
+     * Native invoke a JavaScript method with five parameters.
+     * 
+     * @param <T>
+     *            the return type
+     * @param peer
+     *            the JavaScript object
+     * @param methodName
+     *            the method name
+     * @param param1
+     *            the first parameter
+     * @param param2
+     *            the second parameter
+     * @param param3
+     *            the third parameter
+     * @param param4
+     *            the fourth parameter
+     * @param param5
+     *            the fifth parameter
+     * @return the return value
+     */
+    @Import( module = WEB, js = "(o,m,p1,p2,p3,p4,p5)=>o[m](p1,p2,p3,p4,p5)" )
+    private static native <T> T invoke5( Object peer, DOMString methodName, Object param1, Object param2, Object param3, Object param4, Object param5 );
+
+    /**
+     * Native invoke a JavaScript method with six parameters.
+     * 
+     * @param <T>
+     *            the return type
+     * @param peer
+     *            the JavaScript object
+     * @param methodName
+     *            the method name
+     * @param param1
+     *            the first parameter
+     * @param param2
+     *            the second parameter
+     * @param param3
+     *            the third parameter
+     * @param param4
+     *            the fourth parameter
+     * @param param5
+     *            the fifth parameter
+     * @param param6
+     *            the sixth parameter
+     * @return the return value
+     */
+    @Import( module = WEB, js = "(o,m,p1,p2,p3,p4,p5,p6)=>o[m](p1,p2,p3,p4,p5,p6)" )
+    private static native <T> T invoke6( Object peer, DOMString methodName, Object param1, Object param2, Object param3, Object param4, Object param5, Object param6 );
+
+    /**
+     * Native invoke a JavaScript method with one numeric parameter.
+     * 
+     * @param <T>
+     *            the return type
+     * @param peer
+     *            the JavaScript object
+     * @param methodName
+     *            the method name
+     * @param param1
+     *            the parameter
+     * @return the return value
+     */
+    @Import( module = WEB, js = "(o,m,p1)=>o[m](p1)" )
+    private static native <T> T invokeD1( Object peer, DOMString methodName, double param1 );
+
+    /**
+     * Native invoke a JavaScript method with two numeric parameters.
+     * 
+     * @param <T>
+     *            the return type
+     * @param peer
+     *            the JavaScript object
+     * @param methodName
+     *            the method name
+     * @param param1
+     *            the first parameter
+     * @param param2
+     *            the second parameter
+     * @return the return value
+     */
+    @Import( module = WEB, js = "(o,m,p1,p2)=>o[m](p1,p2)" )
+    private static native <T> T invokeD2( Object peer, DOMString methodName, double param1, double param2 );
+
+    /**
+     * Native invoke a JavaScript method with three numeric parameters.
+     * 
+     * @param <T>
+     *            the return type
+     * @param peer
+     *            the JavaScript object
+     * @param methodName
+     *            the method name
+     * @param param1
+     *            the first parameter
+     * @param param2
+     *            the second parameter
+     * @param param3
+     *            the third parameter
+     * @return the return value
+     */
+    @Import( module = WEB, js = "(o,m,p1,p2,p3)=>o[m](p1,p2,p3)" )
+    private static native <T> T invokeD3( Object peer, DOMString methodName, double param1, double param2, double param3 );
+
+    /**
+     * Native invoke a JavaScript method with four numeric parameters.
+     * 
+     * @param <T>
+     *            the return type
+     * @param peer
+     *            the JavaScript object
+     * @param methodName
+     *            the method name
+     * @param param1
+     *            the first parameter
+     * @param param2
+     *            the second parameter
+     * @param param3
+     *            the third parameter
+     * @param param4
+     *            the fourth parameter
+     * @return the return value
+     */
+    @Import( module = WEB, js = "(o,m,p1,p2,p3,p4)=>o[m](p1,p2,p3,p4)" )
+    private static native <T> T invokeD4( Object peer, DOMString methodName, double param1, double param2, double param3, double param4 );
+
+    /**
+     * Native invoke a JavaScript method with five numeric parameters.
+     * 
+     * @param <T>
+     *            the return type
+     * @param peer
+     *            the JavaScript object
+     * @param methodName
+     *            the method name
+     * @param param1
+     *            the first parameter
+     * @param param2
+     *            the second parameter
+     * @param param3
+     *            the third parameter
+     * @param param4
+     *            the fourth parameter
+     * @param param5
+     *            the fifth parameter
+     * @return the return value
+     */
+    @Import( module = WEB, js = "(o,m,p1,p2,p3,p4,p5)=>o[m](p1,p2,p3,p4,p5)" )
+    private static native <T> T invokeD5( Object peer, DOMString methodName, double param1, double param2, double param3, double param4, double param5 );
+
+    /**
+     * Native invoke a JavaScript method with six numeric parameters.
+     * 
+     * @param <T>
+     *            the return type
+     * @param peer
+     *            the JavaScript object
+     * @param methodName
+     *            the method name
+     * @param param1
+     *            the first parameter
+     * @param param2
+     *            the second parameter
+     * @param param3
+     *            the third parameter
+     * @param param4
+     *            the fourth parameter
+     * @param param5
+     *            the fifth parameter
+     * @param param6
+     *            the sixth parameter
+     * @return the return value
+     */
+    @Import( module = WEB, js = "(o,m,p1,p2,p3,p4,p5,p6)=>o[m](p1,p2,p3,p4,p5,p6)" )
+    private static native <T> T invokeD6( Object peer, DOMString methodName, double param1, double param2, double param3, double param4, double param5, double param6 );
+
+    /**
+     * Invoke a JavaScript method without parameters of this object.
+     * 
+     * @param <T>
+     *            the return type
+     * @param methodName
+     *            the method name
+     * @return the return value
+     */
+    protected <T> T invoke( @Nonnull String methodName ) {
+        return invoke0( peer, domString( methodName ) );
+    }
 
     /**
      * Invoke a JavaScript method with one string parameter of this object.
@@ -164,7 +574,232 @@ protected <T> T invoke( @Nonnull String methodName, String param1 ) {
      * @return the return value
      */
     protected <T> T invoke( @Nonnull String methodName, Object param1 ) {
-        return invoke0( peer, domString( methodName ), param1 );
+        return invoke1( peer, domString( methodName ), param1 );
+    }
+
+    /**
+     * Invoke a JavaScript method with two parameters of this object.
+     * 
+     * @param <T>
+     *            the return type
+     * @param methodName
+     *            the method name
+     * @param param1
+     *            the first parameter
+     * @param param2
+     *            the second parameter
+     * @return the return value
+     */
+    protected <T> T invoke( @Nonnull String methodName, Object param1, Object param2 ) {
+        return invoke2( peer, domString( methodName ), param1, param2 );
+    }
+
+    /**
+     * Invoke a JavaScript method with three parameters of this object.
+     * 
+     * @param <T>
+     *            the return type
+     * @param methodName
+     *            the method name
+     * @param param1
+     *            the first parameter
+     * @param param2
+     *            the second parameter
+     * @param param3
+     *            the third parameter
+     * @return the return value
+     */
+    protected <T> T invoke( @Nonnull String methodName, Object param1, Object param2, Object param3 ) {
+        return invoke3( peer, domString( methodName ), param1, param2, param3 );
+    }
+
+    /**
+     * Invoke a JavaScript method with four parameters of this object.
+     * 
+     * @param <T>
+     *            the return type
+     * @param methodName
+     *            the method name
+     * @param param1
+     *            the first parameter
+     * @param param2
+     *            the second parameter
+     * @param param3
+     *            the third parameter
+     * @param param4
+     *            the fourth parameter
+     * @return the return value
+     */
+    protected <T> T invoke( @Nonnull String methodName, Object param1, Object param2, Object param3, Object param4 ) {
+        return invoke4( peer, domString( methodName ), param1, param2, param3, param4 );
+    }
+
+    /**
+     * Invoke a JavaScript method with five parameters of this object.
+     * 
+     * @param <T>
+     *            the return type
+     * @param methodName
+     *            the method name
+     * @param param1
+     *            the first parameter
+     * @param param2
+     *            the second parameter
+     * @param param3
+     *            the third parameter
+     * @param param4
+     *            the fourth parameter
+     * @param param5
+     *            the fifth parameter
+     * @return the return value
+     */
+    protected <T> T invoke( @Nonnull String methodName, Object param1, Object param2, Object param3, Object param4, Object param5 ) {
+        return invoke5( peer, domString( methodName ), param1, param2, param3, param4, param5 );
+    }
+
+    /**
+     * Invoke a JavaScript method with six parameters of this object.
+     * 
+     * @param <T>
+     *            the return type
+     * @param methodName
+     *            the method name
+     * @param param1
+     *            the first parameter
+     * @param param2
+     *            the second parameter
+     * @param param3
+     *            the third parameter
+     * @param param4
+     *            the fourth parameter
+     * @param param5
+     *            the fifth parameter
+     * @param param6
+     *            the sixth parameter
+     * @return the return value
+     */
+    protected <T> T invoke( @Nonnull String methodName, Object param1, Object param2, Object param3, Object param4, Object param5, Object param6 ) {
+        return invoke6( peer, domString( methodName ), param1, param2, param3, param4, param5, param6 );
+    }
+
+    /**
+     * Invoke a JavaScript method with one numeric parameter of this object. The values are passed as f64 without boxing.
+     * 
+     * @param <T>
+     *            the return type
+     * @param methodName
+     *            the method name
+     * @param param1
+     *            the parameter
+     * @return the return value
+     */
+    protected <T> T invoke( @Nonnull String methodName, double param1 ) {
+        return invokeD1( peer, domString( methodName ), param1 );
+    }
+
+    /**
+     * Invoke a JavaScript method with two numeric parameters of this object. The values are passed as f64 without boxing.
+     * 
+     * @param <T>
+     *            the return type
+     * @param methodName
+     *            the method name
+     * @param param1
+     *            the first parameter
+     * @param param2
+     *            the second parameter
+     * @return the return value
+     */
+    protected <T> T invoke( @Nonnull String methodName, double param1, double param2 ) {
+        return invokeD2( peer, domString( methodName ), param1, param2 );
+    }
+
+    /**
+     * Invoke a JavaScript method with three numeric parameters of this object. The values are passed as f64 without boxing.
+     * 
+     * @param <T>
+     *            the return type
+     * @param methodName
+     *            the method name
+     * @param param1
+     *            the first parameter
+     * @param param2
+     *            the second parameter
+     * @param param3
+     *            the third parameter
+     * @return the return value
+     */
+    protected <T> T invoke( @Nonnull String methodName, double param1, double param2, double param3 ) {
+        return invokeD3( peer, domString( methodName ), param1, param2, param3 );
+    }
+
+    /**
+     * Invoke a JavaScript method with four numeric parameters of this object. The values are passed as f64 without boxing.
+     * 
+     * @param <T>
+     *            the return type
+     * @param methodName
+     *            the method name
+     * @param param1
+     *            the first parameter
+     * @param param2
+     *            the second parameter
+     * @param param3
+     *            the third parameter
+     * @param param4
+     *            the fourth parameter
+     * @return the return value
+     */
+    protected <T> T invoke( @Nonnull String methodName, double param1, double param2, double param3, double param4 ) {
+        return invokeD4( peer, domString( methodName ), param1, param2, param3, param4 );
+    }
+
+    /**
+     * Invoke a JavaScript method with five numeric parameters of this object. The values are passed as f64 without boxing.
+     * 
+     * @param <T>
+     *            the return type
+     * @param methodName
+     *            the method name
+     * @param param1
+     *            the first parameter
+     * @param param2
+     *            the second parameter
+     * @param param3
+     *            the third parameter
+     * @param param4
+     *            the fourth parameter
+     * @param param5
+     *            the fifth parameter
+     * @return the return value
+     */
+    protected <T> T invoke( @Nonnull String methodName, double param1, double param2, double param3, double param4, double param5 ) {
+        return invokeD5( peer, domString( methodName ), param1, param2, param3, param4, param5 );
+    }
+
+    /**
+     * Invoke a JavaScript method with six numeric parameters of this object. The values are passed as f64 without boxing.
+     * 
+     * @param <T>
+     *            the return type
+     * @param methodName
+     *            the method name
+     * @param param1
+     *            the first parameter
+     * @param param2
+     *            the second parameter
+     * @param param3
+     *            the third parameter
+     * @param param4
+     *            the fourth parameter
+     * @param param5
+     *            the fifth parameter
+     * @param param6
+     *            the sixth parameter
+     * @return the return value
+     */
+    protected <T> T invoke( @Nonnull String methodName, double param1, double param2, double param3, double param4, double param5, double param6 ) {
+        return invokeD6( peer, domString( methodName ), param1, param2, param3, param4, param5, param6 );
     }
 
     /**
@@ -175,13 +810,8 @@ protected <T> T invoke( @Nonnull String methodName, Object param1 ) {
      * @return dom string
      */
     public static DOMString domString( @Nonnull String str ) {
-        // in pure we return simple the string
+        // in pure Java we use a bounded cache because the names of properties and methods are converted on every call
         // in wasm code this method should be replaced
-        return new DOMString() {
-            @Override
-            public String toString() {
-                return str;
-            }
-        };
+        return DOMStringCache.get( str );
     }
 }
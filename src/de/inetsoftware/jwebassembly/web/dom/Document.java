@@ -56,6 +56,24 @@ public Text createTextNode( String data ) {
         return new Text( invoke( "createTextNode", data ) );
     }
 
+    /**
+     * https://developer.mozilla.org/en-US/docs/Web/API/Document/createDocumentFragment
+     * 
+     * @return the empty fragment
+     */
+    public DocumentFragment createDocumentFragment() {
+        return new DocumentFragment( invoke( "createDocumentFragment" ) );
+    }
+
+    /**
+     * Create a builder for a subtree that is created with a single call.
+     * 
+     * @return the builder
+     */
+    public FragmentBuilder fragmentBuilder() {
+        return new FragmentBuilder( this );
+    }
+
     /**
      * https://developer.mozilla.org/en-US/docs/Web/API/Document/body
      * 
@@ -39,4 +39,95 @@ public class Element extends Node {
     public String tagName() {
         return get( "tagName" );
     }
+
+    /**
+     * https://developer.mozilla.org/en-US/docs/Web/API/Element/getAttribute
+     * 
+     * @param name
+     *            the name of the attribute
+     * @return the value or null if the attribute does not exist
+     */
+    public String getAttribute( String name ) {
+        return invoke( "getAttribute", name );
+    }
+
+    /**
+     * https://developer.mozilla.org/en-US/docs/Web/API/Element/setAttribute
+     * 
+     * @param name
+     *            the name of the attribute
+     * @param value
+     *            the value of the attribute
+     */
+    public void setAttribute( String name, String value ) {
+        invoke( "setAttribute", domString( name ), domString( value ) );
+    }
+
+    /**
+     * https://developer.mozilla.org/en-US/docs/Web/API/Element/scrollTop
+     * 
+     * @return the count of pixels that the content is scrolled vertically
+     */
+    public double scrollTop() {
+        return getDouble( "scrollTop" );
+    }
+
+    /**
+     * https://developer.mozilla.org/en-US/docs/Web/API/Element/scrollTop
+     * 
+     * @param scrollTop
+     *            the count of pixels that the content should be scrolled vertically
+     */
+    public void setScrollTop( double scrollTop ) {
+        setDouble( "scrollTop", scrollTop );
+    }
+
+    /**
+     * https://developer.mozilla.org/en-US/docs/Web/API/Element/scrollLeft
+     * 
+     * @return the count of pixels that the content is scrolled horizontally
+     */
+    public double scrollLeft() {
+        return getDouble( "scrollLeft" );
+    }
+
+    /**
+     * https://developer.mozilla.org/en-US/docs/Web/API/Element/scrollLeft
+     * 
+     * @param scrollLeft
+     *            the count of pixels that the content should be scrolled horizontally
+     */
+    public void setScrollLeft( double scrollLeft ) {
+        setDouble( "scrollLeft", scrollLeft );
+    }
+
+    /**
+     * https://developer.mozilla.org/en-US/docs/Web/API/Element/scrollTo
+     * 
+     * @param x
+     *            the horizontal pixel position
+     * @param y
+     *            the vertical pixel position
+     */
+    public void scrollTo( double x, double y ) {
+        invoke( "scrollTo", x, y );
+    }
+
+    /**
+     * https://developer.mozilla.org/en-US/docs/Web/API/Element/clientWidth
+     * 
+     * @return the inner width in pixels
+     */
+    public int clientWidth() {
+        return getInt( "clientWidth" );
+    }
+
+    /**
+     * https://developer.mozilla.org/en-US/docs/Web/API/Element/clientHeight
+     * 
+     * @return the inner height in pixels
+     */
+    public int clientHeight() {
+        return getInt( "clientHeight" );
+    }
 }
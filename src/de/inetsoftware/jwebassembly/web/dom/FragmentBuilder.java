@@ -0,0 +1,195 @@
+/*
+ * Copyright 2021 Volker Berlin (i-net software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.inetsoftware.jwebassembly.web.dom;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import de.inetsoftware.jwebassembly.api.annotation.Import;
+import de.inetsoftware.jwebassembly.web.DOMString;
+import de.inetsoftware.jwebassembly.web.JSObject;
+
+/**
+ * Build a subtree of elements, attributes and text nodes in Java and create it with a single call in JavaScript. This
+ * is many times faster than createElement and appendChild for every node, and a live document is changed only once.
+ *
+ * <pre>
+ * document.fragmentBuilder().element( "ul" ).attribute( "class", "list" )
+ *     .element( "li" ).text( "first" ).end()
+ *     .element( "li" ).text( "second" ).end()
+ *     .end().appendTo( document.body() );
+ * </pre>
+ *
+ * The nodes are recorded as instructions in a string. Every instruction is a single char followed by its strings. A
+ * string is written as decimal length, a colon and the chars, so no escaping is needed.
+ * <ul>
+ * <li>E name - create an element, append it to the current node and make it the current node</li>
+ * <li>A name value - set an attribute of the current element</li>
+ * <li>T data - append a text node to the current node</li>
+ * <li>) - make the parent the current node</li>
+ * </ul>
+ *
+ * @author Volker Berlin
+ */
+public class FragmentBuilder {
+
+    private final Document      document;
+
+    private final StringBuilder instructions = new StringBuilder();
+
+    /** the count of open elements */
+    private int                 depth;
+
+    /**
+     * Create a builder.
+     *
+     * @param document
+     *            the document of the nodes
+     */
+    FragmentBuilder( Document document ) {
+        this.document = document;
+    }
+
+    /**
+     * Native create a DocumentFragment from the instructions and append it to the parent.
+     *
+     * @param document
+     *            the native document
+     * @param parent
+     *            the native parent node or null
+     * @param instructions
+     *            the instructions
+     * @return the DocumentFragment, empty if it was appended to the parent
+     */
+    @Import( js = "(d,p,s)=>{" + //
+                    "var f=d.createDocumentFragment(),c=f,i=0;" + //
+                    "function r(){var j=s.indexOf(':',i),n=+s.substring(i,j);i=j+1+n;return s.substr(j+1,n)}" + //
+                    "while(i<s.length){" + //
+                    "switch(s[i++]){" + //
+                    "case'E':var e=d.createElement(r());c.appendChild(e);c=e;break;" + //
+                    "case'A':var k=r();c.setAttribute(k,r());break;" + //
+                    "case'T':c.appendChild(d.createTextNode(r()));break;" + //
+                    "default:c=c.parentNode}}" + //
+                    "if(p)p.appendChild(f);" + //
+                    "return f}" )
+    private static native Object build0( Object document, Object parent, DOMString instructions );
+
+    /**
+     * Start a new element as child of the current element. Attributes and children are added to this element until
+     * {@link #end()} is called.
+     *
+     * @param tagName
+     *            the tag name of the element
+     * @return this
+     */
+    public FragmentBuilder element( @Nonnull String tagName ) {
+        instructions.append( 'E' );
+        append( tagName );
+        depth++;
+        return this;
+    }
+
+    /**
+     * Set an attribute of the current element.
+     *
+     * @param name
+     *            the name of the attribute
+     * @param value
+     *            the value of the attribute
+     * @return this
+     */
+    public FragmentBuilder attribute( @Nonnull String name, @Nonnull String value ) {
+        if( depth == 0 ) {
+            throw new IllegalStateException( "No open element for attribute: " + name );
+        }
+        instructions.append( 'A' );
+        append( name );
+        append( value );
+        return this;
+    }
+
+    /**
+     * Append a text node to the current element.
+     *
+     * @param data
+     *            the text data
+     * @return this
+     */
+    public FragmentBuilder text( @Nonnull String data ) {
+        instructions.append( 'T' );
+        append( data );
+        return this;
+    }
+
+    /**
+     * Close the current element. The parent becomes the current element.
+     *
+     * @return this
+     */
+    public FragmentBuilder end() {
+        if( depth == 0 ) {
+            throw new IllegalStateException( "No open element" );
+        }
+        instructions.append( ')' );
+        depth--;
+        return this;
+    }
+
+    /**
+     * Create the DocumentFragment with all recorded nodes in a single call. Open elements are closed automatically.
+     * The builder is empty after the call and can be reused.
+     *
+     * @return the new fragment
+     */
+    public DocumentFragment build() {
+        return new DocumentFragment( build( null ) );
+    }
+
+    /**
+     * Create all recorded nodes and append it to the parent in a single call. Open elements are closed automatically.
+     * The builder is empty after the call and can be reused.
+     *
+     * @param parent
+     *            the parent node
+     */
+    public void appendTo( @Nonnull Node parent ) {
+        build( parent );
+    }
+
+    /**
+     * Create the nodes and clear the recorded instructions.
+     *
+     * @param parent
+     *            the parent node or null
+     * @return the peer of the fragment
+     */
+    private Object build( @Nullable Node parent ) {
+        String str = instructions.toString();
+        instructions.setLength( 0 );
+        depth = 0;
+        return build0( document.getPeer(), parent == null ? null : parent.getPeer(), JSObject.domString( str ) );
+    }
+
+    /**
+     * Append a string to the instructions.
+     *
+     * @param str
+     *            the string
+     */
+    private void append( String str ) {
+        instructions.append( str.length() ).append( ':' ).append( str );
+    }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2020 Volker Berlin (i-net software)
+ * Copyright 2020 - 2021 Volker Berlin (i-net software)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -32,4 +32,41 @@ public class HTMLCanvasElement extends HTMLElement {
         super( peer );
     }
 
+    /**
+     * https://developer.mozilla.org/en-US/docs/Web/API/HTMLCanvasElement/width
+     * 
+     * @return the width of the coordinate space in pixels
+     */
+    public int width() {
+        return getInt( "width" );
+    }
+
+    /**
+     * https://developer.mozilla.org/en-US/docs/Web/API/HTMLCanvasElement/width
+     * 
+     * @param width
+     *            the width of the coordinate space in pixels
+     */
+    public void setWidth( int width ) {
+        setInt( "width", width );
+    }
+
+    /**
+     * https://developer.mozilla.org/en-US/docs/Web/API/HTMLCanvasElement/height
+     * 
+     * @return the height of the coordinate space in pixels
+     */
+    public int height() {
+        return getInt( "height" );
+    }
+
+    /**
+     * https://developer.mozilla.org/en-US/docs/Web/API/HTMLCanvasElement/height
+     * 
+     * @param height
+     *            the height of the coordinate space in pixels
+     */
+    public void setHeight( int height ) {
+        setInt( "height", height );
+    }
 }
@@ -32,6 +32,12 @@ public class HTMLElement extends Element {
         super( peer );
     }
 
+    /**
+     * The comma separated tag names with its own wrapper class in {@link #createWrapper(String, Object)}. It is a
+     * constant so that it can be used in the JavaScript of Import annotations.
+     */
+    static final String WRAPPER_TAGS = "a,area,button,canvas,div";
+
     /**
      * Create a wrapper for a HTML peer element.
      * 
@@ -59,13 +59,22 @@ public class Node extends EventTarget {
         super( peer );
     }
 
+    /**
+     * The native object for other wrappers of this package.
+     * 
+     * @return the peer
+     */
+    Object getPeer() {
+        return peer;
+    }
+
     /**
      * https://developer.mozilla.org/en-US/docs/Web/API/Node/nodeType
      * 
      * @return the node type
      */
     public int nodeType() {
-        return get( "nodeType" );
+        return getInt( "nodeType" );
     }
 
     /**
@@ -86,4 +95,16 @@ public NodeList childNodes() {
     public void appendChild( Node child ) {
         invoke( "appendChild", child.peer );
     }
+
+    /**
+     * https://developer.mozilla.org/en-US/docs/Web/API/Node/insertBefore
+     * 
+     * @param child
+     *            the child to insert
+     * @param reference
+     *            the node before which the child is inserted or null to insert at the end
+     */
+    public void insertBefore( Node child, Node reference ) {
+        invoke( "insertBefore", child.peer, reference == null ? null : reference.peer );
+    }
 }
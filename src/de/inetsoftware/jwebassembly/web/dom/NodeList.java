@@ -15,6 +15,13 @@
  */
 package de.inetsoftware.jwebassembly.web.dom;
 
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
 import de.inetsoftware.jwebassembly.api.annotation.Import;
 import de.inetsoftware.jwebassembly.web.DOMString;
 import de.inetsoftware.jwebassembly.web.JSObject;
@@ -24,7 +31,28 @@
  * 
  * @author Volker Berlin
  */
-public class NodeList extends JSObject {
+public class NodeList extends JSObject implements Iterable<Node> {
+
+    /** the tag names with its own wrapper class in the same order like in {@link #KIND} */
+    private static final String[] TAGS          = HTMLElement.WRAPPER_TAGS.split( "," );
+
+    /** JavaScript function that returns the code of a node for the wrapper class */
+    private static final String   KIND          = "function(n){var t=n.nodeType;return t!=1?t:16+'" + HTMLElement.WRAPPER_TAGS + "'.split(',').indexOf(n.localName)}";
+
+    /** the code of a node for an element, the tag code is the index in TAGS plus this value */
+    private static final int      ELEMENT_CODE  = 16;
+
+    /** the code of a node if it is the cached node, fits in a char of the codes string */
+    private static final int      CACHED_CODE   = 0xFFFF;
+
+    /** the count of nodes that the iterator request in a single call */
+    private static final int      CHUNK_SIZE    = 256;
+
+    /** the wrappers of the items that was already requested, the identity cache */
+    private Node[]                items;
+
+    /** a JavaScript array with the nodes of the cached wrappers, created on the first bulk request */
+    private Object                nodes;
 
     /**
      * Create a Java instance as wrapper of the JavaScript object.
@@ -42,26 +70,227 @@ public class NodeList extends JSObject {
      * @return the count
      */
     public int length() {
-        return get( "length" );
+        return getInt( "length" );
     }
 
     /**
-     * https://developer.mozilla.org/en-US/docs/Web/API/NodeList/item
+     * Native resolve the type of an item in a single call. The list is live, therefore the node of the cached wrapper is compared.
+     * 
+     * @param list
+     *            the native NodeList
+     * @param idx
+     *            the index
+     * @param cached
+     *            the peer of the cached wrapper for the index or null
+     * @return 0 if there is no item, CACHED_CODE if the item is the cached node, ELEMENT_CODE plus the index in TAGS
+     *         for an element and the nodeType for all other nodes
+     */
+    @Import( js = "(l,i,c)=>{var n=l.item(i);" + //
+                    "if(n==null)return 0;" + //
+                    "if(n===c)return 65535;" + //
+                    "return (" + KIND + ")(n)}" )
+    private static native int item0( Object list, int idx, Object cached );
+
+    /**
+     * Native get an item and save it in the array of the cached nodes.
      * 
+     * @param list
+     *            the native NodeList
+     * @param nodes
+     *            the array of the cached nodes or null
      * @param idx
      *            the index
      * @return the item
      */
+    @Import( js = "(l,p,i)=>{var n=l.item(i);if(p)p[i]=n;return n}" )
+    private static native Object peer0( Object list, Object nodes, int idx );
+
+    /**
+     * Native create the array of the cached nodes.
+     * 
+     * @return the new array
+     */
+    @Import( js = "()=>[]" )
+    private static native Object nodes0();
+
+    /**
+     * Native resolve the types of a range of items in a single call. The current nodes are saved in the array of the
+     * cached nodes.
+     * 
+     * @param list
+     *            the native NodeList
+     * @param nodes
+     *            the array of the cached nodes
+     * @param start
+     *            the first index
+     * @param end
+     *            the index after the last item, the value is limited to the length
+     * @return a char for every item with the code of item0 but never 0
+     */
+    @Import( js = "(l,p,s,e)=>{var k=" + KIND + ",c='';" + //
+                    "e=Math.min(e,l.length);" + //
+                    "for(var i=s;i<e;i++){" + //
+                    "var n=l[i];" + //
+                    "c+=String.fromCharCode(n===p[i]?65535:k(n));" + //
+                    "p[i]=n}" + //
+                    "return c}" )
+    private static native String codes0( Object list, Object nodes, int start, int end );
+
+    /**
+     * https://developer.mozilla.org/en-US/docs/Web/API/NodeList/item
+     * 
+     * @param idx
+     *            the index
+     * @return the item or null if the index is out of range
+     */
     public Node item( int idx ) {
-        Object peer = invoke( "item", idx );
-        HTMLElement node = new HTMLElement( peer );
-        switch( node.nodeType() ) {
-            case Node.ELEMENT_NODE:
-                String tagName = node.tagName();
-                return HTMLElement.createWrapper( tagName, peer );
-            case Node.TEXT_NODE:
-                return new Text( peer );
+        Node cached = cached( idx );
+        int code = item0( peer, idx, cached == null ? null : cached.getPeer() );
+        if( code == CACHED_CODE ) {
+            return cached;
+        }
+        if( code == 0 ) {
+            return null;
+        }
+        return create( idx, code, -1 );
+    }
+
+    /**
+     * All items in a snapshot of the list. The types of all items are requested in a single call. Only items that are
+     * not cached from a previous request need an additional call.
+     * 
+     * @return the items
+     */
+    public Node[] toArray() {
+        return items( 0, Integer.MAX_VALUE );
+    }
+
+    /**
+     * Get the items in a snapshot of the list and perform the action for every item.
+     * 
+     * @param action
+     *            the action
+     */
+    @Override
+    public void forEach( Consumer<? super Node> action ) {
+        for( Node node : toArray() ) {
+            action.accept( node );
+        }
+    }
+
+    /**
+     * An iterator that request the items in chunks. Every chunk is a snapshot of the current list. This is the best
+     * choice for very large lists.
+     * 
+     * @return the iterator
+     */
+    @Override
+    public Iterator<Node> iterator() {
+        return new Iterator<Node>() {
+            private Node[] chunk = items( 0, CHUNK_SIZE );
+
+            private int    start;
+
+            private int    idx;
+
+            @Override
+            public boolean hasNext() {
+                if( idx == chunk.length && chunk.length == CHUNK_SIZE ) {
+                    start += CHUNK_SIZE;
+                    chunk = items( start, start + CHUNK_SIZE );
+                    idx = 0;
+                }
+                return idx < chunk.length;
+            }
+
+            @Override
+            public Node next() {
+                if( !hasNext() ) {
+                    throw new NoSuchElementException();
+                }
+                return chunk[idx++];
+            }
+        };
+    }
+
+    /**
+     * A sequential stream of the items.
+     * 
+     * @return the stream
+     */
+    public Stream<Node> stream() {
+        return StreamSupport.stream( spliterator(), false );
+    }
+
+    /**
+     * Get the wrappers of a range of items.
+     * 
+     * @param start
+     *            the first index
+     * @param end
+     *            the index after the last item, the value is limited to the length
+     * @return the wrappers
+     */
+    private Node[] items( int start, int end ) {
+        Object nodes = this.nodes;
+        if( nodes == null ) {
+            this.nodes = nodes = nodes0();
+        }
+        String codes = codes0( peer, nodes, start, end );
+        int count = codes.length();
+        Node[] result = new Node[count];
+        for( int i = 0; i < count; i++ ) {
+            int idx = start + i;
+            int code = codes.charAt( i );
+            Node cached = cached( idx );
+            if( code != CACHED_CODE && cached != null ) {
+                // the wrapper was created with item() before the array of the cached nodes exists or the list was changed
+                code = item0( peer, idx, cached.getPeer() );
+            }
+            result[i] = code == CACHED_CODE ? cached : create( idx, code, start + count );
+        }
+        return result;
+    }
+
+    /**
+     * Get the cached wrapper of an item.
+     * 
+     * @param idx
+     *            the index
+     * @return the wrapper or null
+     */
+    private Node cached( int idx ) {
+        Node[] items = this.items;
+        return items != null && idx >= 0 && idx < items.length ? items[idx] : null;
+    }
+
+    /**
+     * Create the wrapper of an item and save it in the cache.
+     * 
+     * @param idx
+     *            the index
+     * @param code
+     *            the code of the node
+     * @param size
+     *            the minimum size of the cache or -1 if the length should be requested
+     * @return the wrapper
+     */
+    private Node create( int idx, int code, int size ) {
+        Object peer = peer0( this.peer, nodes, idx );
+        Node node;
+        if( code >= ELEMENT_CODE - 1 ) {
+            // -1 of indexOf is an element without its own wrapper class
+            node = code == ELEMENT_CODE - 1 ? new HTMLElement( peer ) : HTMLElement.createWrapper( TAGS[code - ELEMENT_CODE], peer );
+        } else if( code == Node.TEXT_NODE ) {
+            node = new Text( peer );
+        } else {
+            node = new Node( peer );
+        }
+        Node[] items = this.items;
+        if( items == null || idx >= items.length ) {
+            this.items = items = Arrays.copyOf( items == null ? new Node[0] : items, Math.max( idx + 1, size < 0 ? length() : size ) );
         }
-        return new Node( peer );
+        items[idx] = node;
+        return node;
     }
 }
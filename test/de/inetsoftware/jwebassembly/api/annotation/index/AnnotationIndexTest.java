@@ -0,0 +1,164 @@
+/*
+ * Copyright 2021 Volker Berlin (i-net software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.inetsoftware.jwebassembly.api.annotation.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.inetsoftware.jwebassembly.api.annotation.Export;
+import de.inetsoftware.jwebassembly.api.annotation.Import;
+import de.inetsoftware.jwebassembly.api.annotation.Replace;
+
+public class AnnotationIndexTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void roundTrip() throws IOException {
+        AnnotationIndex index = new AnnotationIndex();
+        Map<String, String> values = new LinkedHashMap<>();
+        values.put( "module", "Web" );
+        values.put( "name", "ä€" );
+        StringBuilder js = new StringBuilder();
+        for( int i = 0; i < 10000; i++ ) {
+            js.append( "(a)=>a;" );
+        }
+        values.put( "js", js.toString() );
+        index.add( new AnnotationIndex.Entry( Import.class.getName(), "a/B", "get", "(I)V", 0x0108, values ) );
+        index.add( new AnnotationIndex.Entry( Replace.class.getName(), "a/C", "", "", 0x0001, Collections.singletonMap( "value", "java/lang/Math.max(II)I" ) ) );
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        index.write( output );
+        AnnotationIndex read = AnnotationIndex.read( new ByteArrayInputStream( output.toByteArray() ) );
+
+        assertEquals( 2, read.entries().size() );
+        AnnotationIndex.Entry entry = read.entries( Import.class ).get( 0 );
+        assertEquals( "a/B", entry.getClassName() );
+        assertEquals( "get", entry.getName() );
+        assertEquals( "(I)V", entry.getDescriptor() );
+        assertEquals( 0x0108, entry.getAccess() );
+        assertEquals( "ä€", entry.getValue( "name" ) );
+        assertEquals( js.toString(), entry.getValue( "js" ) );
+        assertNull( entry.getValue( "other" ) );
+        assertEquals( "a/C", read.map( Replace.class, "value" ).get( "java/lang/Math.max(II)I" ).getClassName() );
+    }
+
+    @Test
+    public void invalidFormat() {
+        try {
+            AnnotationIndex.read( new ByteArrayInputStream( new byte[] { 1, 2, 3, 4, 0, 1 } ) );
+            fail( "IOException expected" );
+        } catch( IOException ex ) {
+            // expected
+        }
+    }
+
+    @Test
+    public void processor() throws IOException {
+        String source = "package p;\n" //
+                        + "import de.inetsoftware.jwebassembly.api.annotation.*;\n" //
+                        + "public class Outer {\n" //
+                        + "    @Import( js = \"()=>1\" ) static native int answer();\n" //
+                        + "    @Import( module = \"M\", name = \"n\" ) static native void named( String[][] a, java.util.List<String> b );\n" //
+                        + "    @Export public static <T extends Number> T generic( T value, int[] ints ) { return value; }\n" //
+                        + "    public class Inner { @Replace( \"x/Y.<init>()V\" ) public Inner( long a ) {} }\n" //
+                        + "    public static class Nested { @Replace( \"x/Z.<init>()V\" ) public Nested( double d ) {} }\n" //
+                        + "}\n";
+        AnnotationIndex index = compile( "p/Outer", source );
+
+        Map<String, AnnotationIndex.Entry> entries = new HashMap<>();
+        for( AnnotationIndex.Entry entry : index.entries() ) {
+            entries.put( entry.getClassName() + '.' + entry.getName() + entry.getDescriptor(), entry );
+        }
+        AnnotationIndex.Entry answer = entries.get( "p/Outer.answer()I" );
+        assertNotNull( entries.keySet().toString(), answer );
+        assertEquals( "Outer", answer.getValue( "module" ) );
+        assertEquals( "answer", answer.getValue( "name" ) );
+        assertEquals( "()=>1", answer.getValue( "js" ) );
+        assertTrue( (answer.getAccess() & 0x0108) == 0x0108 ); // static native
+
+        AnnotationIndex.Entry named = entries.get( "p/Outer.named([[Ljava/lang/String;Ljava/util/List;)V" );
+        assertNotNull( entries.keySet().toString(), named );
+        assertEquals( "M", named.getValue( "module" ) );
+        assertEquals( "n", named.getValue( "name" ) );
+
+        AnnotationIndex.Entry generic = entries.get( "p/Outer.generic(Ljava/lang/Number;[I)Ljava/lang/Number;" );
+        assertNotNull( entries.keySet().toString(), generic );
+        assertEquals( Export.class.getName(), generic.getAnnotation() );
+        assertEquals( "generic", generic.getValue( "name" ) );
+
+        assertNotNull( entries.keySet().toString(), entries.get( "p/Outer$Inner.<init>(Lp/Outer;J)V" ) );
+        assertNotNull( entries.keySet().toString(), entries.get( "p/Outer$Nested.<init>(D)V" ) );
+    }
+
+    /**
+     * Compile a source with the annotation processor and read the written index.
+     *
+     * @param className
+     *            the internal name of the class
+     * @param source
+     *            the source code
+     * @return the index
+     * @throws IOException
+     *             if any I/O error occur
+     */
+    private AnnotationIndex compile( String className, String source ) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        JavaFileObject file = new SimpleJavaFileObject( URI.create( "string:///" + className + ".java" ), JavaFileObject.Kind.SOURCE ) {
+            @Override
+            public CharSequence getCharContent( boolean ignoreEncodingErrors ) {
+                return source;
+            }
+        };
+        File output = temp.newFolder();
+        JavaCompiler.CompilationTask task = compiler.getTask( null, null, null, Arrays.asList( "-d", output.getPath(), "-classpath", System.getProperty( "java.class.path" ) ), null, Collections.singletonList( file ) );
+        task.setProcessors( Collections.singletonList( new AnnotationIndexProcessor() ) );
+        assertTrue( "compile failed", task.call() );
+
+        File indexFile = new File( output, AnnotationIndex.RESOURCE );
+        assertTrue( Files.isRegularFile( indexFile.toPath() ) );
+        try( InputStream input = new FileInputStream( indexFile ) ) {
+            return AnnotationIndex.read( input );
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2021 Volker Berlin (i-net software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.inetsoftware.jwebassembly.emulator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import de.inetsoftware.jwebassembly.api.annotation.Import;
+import de.inetsoftware.jwebassembly.web.DOMString;
+import de.inetsoftware.jwebassembly.web.JSObject;
+
+@RunWith( JWebAssemblyRunner.class )
+public class ImportTest {
+
+    @Import( module = "ImportTest", js = "()=>42" )
+    private static native int answer();
+
+    @Import( module = "ImportTest", js = "(a,b)=>a+b" )
+    private static native int addInt( int a, int b );
+
+    @Import( module = "ImportTest", js = "(a,b,c)=>a+b+c" )
+    private static native long addLong( long a, int b, long c );
+
+    @Import( module = "ImportTest", js = "(a,b)=>a*b" )
+    private static native double mulDouble( double a, double b );
+
+    @Import( module = "ImportTest", js = "(a)=>a/2" )
+    private static native float half( float a );
+
+    @Import( module = "ImportTest", js = "(a)=>!a" )
+    private static native boolean not( boolean a );
+
+    @Import( module = "ImportTest", js = "(a)=>a+1" )
+    private static native char nextChar( char a );
+
+    @Import( module = "ImportTest", js = "(a,b,c,d,e)=>a+b+c+d+e" )
+    private static native double sum( int a, double b, float c, long d, short e );
+
+    @Import( module = "ImportTest", js = "(s)=>s+'!'" )
+    private static native DOMString exclamation( DOMString str );
+
+    @Import( module = "ImportTest", js = "()=>{window.importTestCounter=(window.importTestCounter||0)+1}" )
+    private static native void increment();
+
+    @Import( module = "ImportTest", js = "()=>window.importTestCounter||0" )
+    private static native int counter();
+
+    @Import( module = "ImportTest", js = "function(v){this.marker=v}" )
+    private static native void setMarker( int value );
+
+    @Import( module = "ImportTest", js = "function(){return this.marker|0}" )
+    private static native int getMarker();
+
+    @Test
+    public void primitives() {
+        assertEquals( 42, answer() );
+        assertEquals( 5, addInt( 2, 3 ) );
+        assertEquals( 6000000004L, addLong( 6000000000L, 1, 3 ) );
+        assertEquals( 7.5, mulDouble( 2.5, 3 ), 0 );
+        assertEquals( 1.25F, half( 2.5F ), 0 );
+        assertFalse( not( true ) );
+        assertTrue( not( false ) );
+        assertEquals( 'b', nextChar( 'a' ) );
+    }
+
+    @Test
+    public void manyParameters() {
+        assertEquals( 15.5, sum( 1, 2.5, 3, 4, (short)5 ), 0 );
+    }
+
+    @Test
+    public void domString() {
+        assertEquals( "abc!", exclamation( JSObject.domString( "abc" ) ).toString() );
+    }
+
+    @Test
+    public void batchWithoutParameters() {
+        JWebAssemblyEmulator.setBatchVoidImports( true );
+        try {
+            int count = counter();
+            increment();
+            // the non void call must flush the buffered call first
+            assertEquals( count + 1, counter() );
+        } finally {
+            JWebAssemblyEmulator.setBatchVoidImports( false );
+        }
+    }
+
+    @Test
+    public void batchThis() {
+        JWebAssemblyEmulator.setBatchVoidImports( true );
+        try {
+            // the module is the this of a batched call like of an unbatched call
+            setMarker( 7 );
+            assertEquals( 7, getMarker() );
+        } finally {
+            JWebAssemblyEmulator.setBatchVoidImports( false );
+        }
+    }
+}
@@ -15,11 +15,15 @@
  */
 package de.inetsoftware.jwebassembly.emulator;
 
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.runners.BlockJUnit4ClassRunner;
 import org.junit.runners.model.FrameworkMethod;
 import org.junit.runners.model.InitializationError;
+import org.junit.runners.model.RunnerScheduler;
 import org.junit.runners.model.Statement;
 
 /**
@@ -30,7 +34,7 @@
 public class JWebAssemblyRunner extends BlockJUnit4ClassRunner {
 
     /**
-     * Create an instance
+     * Create an instance. If the emulator has more than one page then the test methods are scheduled across the pages.
      * 
      * @param testClass
      *            the test class
@@ -39,6 +43,10 @@ public class JWebAssemblyRunner extends BlockJUnit4ClassRunner {
      */
     public JWebAssemblyRunner( Class<?> testClass ) throws InitializationError {
         super( testClass );
+        int pageCount = JWebAssemblyEmulator.getPageCount();
+        if( pageCount > 1 ) {
+            setScheduler( new PageScheduler( pageCount ) );
+        }
     }
 
     /**
@@ -49,30 +57,67 @@ protected Statement methodInvoker( FrameworkMethod method, Object test ) {
         Statement statement = super.methodInvoker( method, test );
 
         return new Statement() {
-            private Throwable error;
-
             /**
              * {@inheritDoc}
              */
             @Override
             public void evaluate() throws Throwable {
-                CountDownLatch launchLatch = new CountDownLatch( 1 );
-                // show the emulator and run the test
-                JWebAssemblyEmulator.launchContent( "", () -> {
-                    try {
-                        statement.evaluate();
-                    } catch( Throwable th ) {
-                        error = th;
-                    }
-                    JWebAssemblyEmulator.hide();
-                    launchLatch.countDown();
-                } );
-                // wait that the test finished
-                launchLatch.await();
-                if( error != null ) {
-                    JWebAssemblyEmulator.throwAny( error );
+                // show the emulator and run the test, the empty page is only reused between the tests if enabled
+                // because a reset does not restore the JavaScript state of the page
+                try {
+                    JWebAssemblyEmulator.launchAsync( null, "", () -> {
+                        try {
+                            statement.evaluate();
+                        } catch( Throwable th ) {
+                            JWebAssemblyEmulator.throwAny( th );
+                        } finally {
+                            JWebAssemblyEmulator.hide();
+                        }
+                    }, JWebAssemblyEmulator.isReusePage() ).get(); // wait that the test finished
+                } catch( ExecutionException ex ) {
+                    throw ex.getCause();
                 }
             }
         };
     }
+
+    /**
+     * Run the test methods with a thread for every page of the emulator. The test methods itself run on the JavaFX
+     * application thread one after the other but the loading of a page overlap with the running tests.
+     */
+    private static class PageScheduler implements RunnerScheduler {
+
+        private final ExecutorService executor;
+
+        /**
+         * Create an instance.
+         * 
+         * @param pageCount
+         *            the count of pages of the emulator
+         */
+        PageScheduler( int pageCount ) {
+            executor = Executors.newFixedThreadPool( pageCount );
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void schedule( Runnable childStatement ) {
+            executor.execute( childStatement );
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void finished() {
+            executor.shutdown();
+            try {
+                executor.awaitTermination( Long.MAX_VALUE, TimeUnit.MILLISECONDS );
+            } catch( InterruptedException ex ) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
 }
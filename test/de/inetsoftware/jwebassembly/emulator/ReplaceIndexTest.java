@@ -0,0 +1,219 @@
+/*
+ * Copyright 2021 Volker Berlin (i-net software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.inetsoftware.jwebassembly.emulator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import de.inetsoftware.jwebassembly.api.annotation.Partial;
+import de.inetsoftware.jwebassembly.api.annotation.Replace;
+
+/**
+ * Test the replacements of the javaagent option "replace". The classes of this test are patched and loaded in a
+ * separate class loader. The JVM verifies all classes of this class loader, so a successful call also verifies the
+ * rewritten class files.
+ *
+ * @author Volker Berlin
+ */
+public class ReplaceIndexTest {
+
+    private static final String PREFIX = ReplaceIndexTest.class.getName() + '$';
+
+    private static ReplaceIndex index;
+
+    @BeforeClass
+    public static void beforeClass() {
+        index = new ReplaceIndex();
+        index.scan( read( UtilReplacement.class.getName() ) );
+        index.scan( read( Replacement.class.getName() ) );
+        index.scan( read( TargetPartial.class.getName() ) );
+        index.scan( read( Caller.class.getName() ) );
+    }
+
+    @Test
+    public void staticMethod() throws Exception {
+        assertEquals( -5, call( "minus", 5 ) );
+    }
+
+    @Test
+    public void typeRename() throws Exception {
+        assertEquals( "replacement", call( "name" ) );
+    }
+
+    @Test
+    public void partialMerge() throws Exception {
+        assertEquals( 42, call( "twice" ) );
+
+        Class<?> target = new PatchLoader().loadClass( PREFIX + "Target" );
+        assertNotNull( target.getDeclaredField( "extra" ) );
+        assertTrue( Modifier.isPublic( target.getDeclaredMethod( "twice" ).getModifiers() ) );
+    }
+
+    @Test
+    public void publicAccess() throws Exception {
+        Class<?> clazz = new PatchLoader().loadClass( PREFIX + "UtilReplacement" );
+        assertTrue( Modifier.isPublic( clazz.getModifiers() ) );
+        assertTrue( Modifier.isPublic( clazz.getDeclaredMethod( "minus", int.class ).getModifiers() ) );
+        assertFalse( Modifier.isPublic( clazz.getDeclaredMethod( "unused" ).getModifiers() ) );
+    }
+
+    @Test
+    public void withoutRedirect() {
+        String className = (PREFIX + "Caller").replace( '.', '/' );
+        assertNull( index.patch( className, read( PREFIX + "Caller" ), false ) );
+        assertNotNull( index.patch( className, read( PREFIX + "Caller" ), true ) );
+    }
+
+    /**
+     * Call a static method of the patched Caller class.
+     *
+     * @param name
+     *            the method name
+     * @param args
+     *            the int parameters
+     * @return the result
+     * @throws Exception
+     *             if any error occur
+     */
+    private static Object call( String name, Object... args ) throws Exception {
+        Class<?> caller = new PatchLoader().loadClass( PREFIX + "Caller" );
+        for( Method method : caller.getDeclaredMethods() ) {
+            if( method.getName().equals( name ) ) {
+                return method.invoke( null, args );
+            }
+        }
+        throw new NoSuchMethodException( name );
+    }
+
+    /**
+     * Read the class file of a class of this test.
+     *
+     * @param className
+     *            the binary name
+     * @return the class file
+     */
+    private static byte[] read( String className ) {
+        try( InputStream input = ReplaceIndexTest.class.getResourceAsStream( '/' + className.replace( '.', '/' ) + ".class" ) ) {
+            return ReplaceIndex.readAll( input );
+        } catch( IOException ex ) {
+            throw new UncheckedIOException( ex );
+        }
+    }
+
+    /**
+     * Define the nested classes of this test with the applied replacements.
+     */
+    private static class PatchLoader extends ClassLoader {
+
+        PatchLoader() {
+            super( ReplaceIndexTest.class.getClassLoader() );
+        }
+
+        @Override
+        protected Class<?> loadClass( String name, boolean resolve ) throws ClassNotFoundException {
+            if( !name.startsWith( PREFIX ) ) {
+                return super.loadClass( name, resolve );
+            }
+            synchronized( getClassLoadingLock( name ) ) {
+                Class<?> clazz = findLoadedClass( name );
+                if( clazz == null ) {
+                    byte[] bytes = read( name );
+                    byte[] patched = index.patch( name.replace( '.', '/' ), bytes, true );
+                    if( patched != null ) {
+                        bytes = patched;
+                    }
+                    clazz = defineClass( name, bytes, 0, bytes.length );
+                }
+                return clazz;
+            }
+        }
+    }
+
+    static class Util {
+        public static int minus( int value ) {
+            return 0;
+        }
+
+        public static int twice( Target target ) {
+            return -1;
+        }
+    }
+
+    static class UtilReplacement {
+        @Replace( "de/inetsoftware/jwebassembly/emulator/ReplaceIndexTest$Util.minus(I)I" )
+        private static int minus( int value ) {
+            return -value;
+        }
+
+        private static void unused() {
+        }
+    }
+
+    static class Original {
+        String name() {
+            return "original";
+        }
+    }
+
+    @Replace( "de/inetsoftware/jwebassembly/emulator/ReplaceIndexTest$Original" )
+    static class Replacement {
+        String name() {
+            return "replacement";
+        }
+    }
+
+    static class Target {
+        int value = 21;
+    }
+
+    @Partial( "de/inetsoftware/jwebassembly/emulator/ReplaceIndexTest$Target" )
+    static class TargetPartial {
+        int         value;
+
+        private int extra;
+
+        @Replace( "de/inetsoftware/jwebassembly/emulator/ReplaceIndexTest$Util.twice(Lde/inetsoftware/jwebassembly/emulator/ReplaceIndexTest$Target;)I" )
+        private int twice() {
+            return value * 2 + extra;
+        }
+    }
+
+    public static class Caller {
+        public static int minus( int value ) {
+            return Util.minus( value );
+        }
+
+        public static String name() {
+            return new Original().name();
+        }
+
+        public static int twice() {
+            return Util.twice( new Target() );
+        }
+    }
+}
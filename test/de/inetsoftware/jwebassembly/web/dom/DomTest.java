@@ -16,6 +16,9 @@
 package de.inetsoftware.jwebassembly.web.dom;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
@@ -44,6 +47,21 @@ public void area() {
         assertEquals( Node.ELEMENT_NODE, div.nodeType() );
     }
 
+    @Test
+    public void wrapperTags() {
+        Document document = Window.document();
+        HTMLElement div = document.createElement( "div" );
+        for( String tag : HTMLElement.WRAPPER_TAGS.split( "," ) ) {
+            HTMLElement element = document.createElement( tag );
+            assertNotSame( tag, HTMLElement.class, element.getClass() );
+            div.appendChild( element );
+        }
+        // the wrappers of the NodeList are created from the codes of the JavaScript
+        for( Node node : div.childNodes() ) {
+            assertNotSame( HTMLElement.class, node.getClass() );
+        }
+    }
+
     @Test
     public void nodeList() {
         Document document = Window.document();
@@ -59,4 +77,124 @@ public void nodeList() {
         assertEquals( Node.TEXT_NODE, item.nodeType() );
         assertTrue( item instanceof Text );
     }
+
+    @Test
+    public void nodeListItem() {
+        Document document = Window.document();
+        HTMLElement div = document.createElement( "div" );
+        div.appendChild( document.createElement( "area" ) );
+        div.appendChild( document.createTextNode( "some text" ) );
+        NodeList childNodes = div.childNodes();
+        Node area = childNodes.item( 0 );
+        assertTrue( area instanceof HTMLAreaElement );
+        assertSame( area, childNodes.item( 0 ) );
+        assertTrue( childNodes.item( 1 ) instanceof Text );
+        assertNull( childNodes.item( 2 ) );
+
+        // the list is live
+        div.appendChild( document.createElement( "canvas" ) );
+        assertSame( area, childNodes.item( 0 ) );
+        assertTrue( childNodes.item( 2 ) instanceof HTMLCanvasElement );
+    }
+
+    @Test
+    public void nodeListIterable() {
+        Document document = Window.document();
+        HTMLElement div = document.createElement( "div" );
+        for( int i = 0; i < 300; i++ ) {
+            div.appendChild( i % 2 == 0 ? document.createElement( "a" ) : document.createTextNode( "text" ) );
+        }
+        NodeList childNodes = div.childNodes();
+        Node first = childNodes.item( 0 );
+        Node[] nodes = childNodes.toArray();
+        assertEquals( 300, nodes.length );
+        assertSame( first, nodes[0] );
+        int i = 0;
+        for( Node node : childNodes ) {
+            assertSame( nodes[i], node );
+            assertTrue( i % 2 == 0 ? node instanceof HTMLAnchorElement : node instanceof Text );
+            i++;
+        }
+        assertEquals( 300, i );
+        assertEquals( 150, childNodes.stream().filter( node -> node instanceof Text ).count() );
+    }
+
+    @Test
+    public void canvasSize() {
+        Document document = Window.document();
+        HTMLCanvasElement canvas = document.createElement( "canvas" );
+        assertEquals( 300, canvas.width() );
+        assertEquals( 150, canvas.height() );
+        canvas.setWidth( 640 );
+        canvas.setHeight( 480 );
+        assertEquals( 640, canvas.width() );
+        assertEquals( 480, canvas.height() );
+    }
+
+    @Test
+    public void scrollTo() {
+        Document document = Window.document();
+        HTMLElement div = document.createElement( "div" );
+        div.setAttribute( "style", "width:100px;height:100px;overflow:scroll" );
+        HTMLElement content = document.createElement( "div" );
+        content.setAttribute( "style", "width:1000px;height:1000px" );
+        div.appendChild( content );
+        document.body().appendChild( div );
+        assertEquals( 0, div.scrollTop(), 0 );
+        assertEquals( 0, div.scrollLeft(), 0 );
+
+        div.scrollTo( 30, 40 );
+        assertEquals( 40, div.scrollTop(), 0 );
+        assertEquals( 30, div.scrollLeft(), 0 );
+
+        div.setScrollTop( 10 );
+        div.setScrollLeft( 20 );
+        assertEquals( 10, div.scrollTop(), 0 );
+        assertEquals( 20, div.scrollLeft(), 0 );
+    }
+
+    @Test
+    public void attributesAndInsert() {
+        Document document = Window.document();
+        HTMLElement div = document.createElement( "div" );
+        div.setAttribute( "title", "hello" );
+        assertEquals( "hello", div.getAttribute( "title" ) );
+        assertNull( div.getAttribute( "lang" ) );
+
+        Text second = document.createTextNode( "second" );
+        div.appendChild( second );
+        HTMLElement first = document.createElement( "a" );
+        div.insertBefore( first, second );
+        assertTrue( div.childNodes().item( 0 ) instanceof HTMLAnchorElement );
+        assertEquals( 2, div.childNodes().length() );
+    }
+
+    @Test
+    public void fragmentBuilder() {
+        Document document = Window.document();
+        HTMLElement div = document.createElement( "div" );
+        document.fragmentBuilder() //
+                        .element( "a" ).attribute( "href", "#:1" ).text( "first: 12" ).end() //
+                        .text( "\u00e4 and :" ) //
+                        .element( "div" ).element( "area" ) //
+                        .appendTo( div );
+        NodeList childNodes = div.childNodes();
+        assertEquals( 3, childNodes.length() );
+        HTMLAnchorElement a = (HTMLAnchorElement)childNodes.item( 0 );
+        assertEquals( "#:1", a.getAttribute( "href" ) );
+        assertEquals( Node.TEXT_NODE, a.childNodes().item( 0 ).nodeType() );
+        assertTrue( childNodes.item( 1 ) instanceof Text );
+        Node inner = ((HTMLDivElement)childNodes.item( 2 )).childNodes().item( 0 );
+        assertTrue( inner instanceof HTMLAreaElement );
+
+        FragmentBuilder builder = document.fragmentBuilder();
+        DocumentFragment fragment = builder.element( "div" ).end().element( "div" ).build();
+        assertEquals( Node.DOCUMENT_FRAGMENT_NODE, fragment.nodeType() );
+        assertEquals( 2, fragment.childNodes().length() );
+
+        // the builder is empty after build and can be reused
+        fragment = builder.text( "reused" ).build();
+        assertEquals( 1, fragment.childNodes().length() );
+        assertEquals( Node.TEXT_NODE, fragment.childNodes().item( 0 ).nodeType() );
+    }
 }